@@ -0,0 +1,169 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2013 Anders Wisch
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package cron;
+
+import com.google.common.base.Joiner;
+import com.google.common.base.Preconditions;
+import com.google.common.collect.ImmutableList;
+
+import java.time.LocalDateTime;
+import java.time.ZonedDateTime;
+import java.time.temporal.ChronoUnit;
+import java.util.List;
+
+/**
+ * Matches the times that all of its expressions match. Expressions are tried cheapest first, so that the expensive
+ * ones only run for times the cheap ones let through.
+ */
+final class AndCronExpression extends CronExpression {
+    /**
+     * How far past the given time {@link #nextTimeAfter(ZonedDateTime)} looks for a common match before giving up,
+     * matching {@link DefaultCronExpression}'s horizon.
+     */
+    private static final int SEARCH_HORIZON_IN_YEARS = 400;
+
+    private final ImmutableList<CronExpression> expressions;
+    // the cheapest expression that is not a negation, which moves candidates past times a negation rules out
+    private final CronExpression leader;
+    private final int cost;
+
+    AndCronExpression(List<CronExpression> expressions) {
+        Preconditions.checkArgument(!expressions.isEmpty(), "Nothing to combine");
+        this.expressions = byCost(expressions);
+        CronExpression leader = null;
+        int cost = 0;
+        for (CronExpression expression : this.expressions) {
+            if (leader == null && !(expression instanceof NotCronExpression))
+                leader = expression;
+            cost += expression.cost();
+        }
+        this.leader = leader;
+        this.cost = cost;
+    }
+
+    AndCronExpression(CronExpression first, CronExpression second) {
+        this(ImmutableList.of(first, second));
+    }
+
+    @Override
+    public boolean matches(ZonedDateTime t) {
+        for (CronExpression expression : expressions)
+            if (!expression.matches(t))
+                return false;
+        return true;
+    }
+
+    /**
+     * Leapfrogs the expressions: the first one that does not match the candidate moves it forward to its own next
+     * match, until they all match the same time.
+     */
+    @Override
+    public ZonedDateTime nextTimeAfter(ZonedDateTime after) {
+        ZonedDateTime t = null;
+        for (CronExpression expression : expressions) {
+            if (expression instanceof NotCronExpression)
+                continue;
+            ZonedDateTime next = expression.nextTimeAfter(after);
+            if (next == null)
+                return null;
+            if (t == null || next.isAfter(t))
+                t = next;
+        }
+        if (t == null)
+            t = expressions.get(0).nextTimeAfter(after);
+        int lastYear = after.getYear() + SEARCH_HORIZON_IN_YEARS;
+        while (t != null && t.getYear() <= lastYear) {
+            CronExpression failed = null;
+            for (CronExpression expression : expressions) {
+                if (!expression.matches(t)) {
+                    failed = expression;
+                    break;
+                }
+            }
+            if (failed == null)
+                return t;
+            // nothing a negation rules out can match, so the next candidate is the next time the leader matches
+            if (failed instanceof NotCronExpression && leader != null)
+                failed = leader;
+            t = failed.nextTimeAfter(t);
+        }
+        return null;
+    }
+
+    /**
+     * Returns false only if one of the expressions can never match, though expressions that can match on their own
+     * may still never match together.
+     */
+    @Override
+    public boolean isSatisfiable() {
+        for (CronExpression expression : expressions)
+            if (!expression.isSatisfiable())
+                return false;
+        return true;
+    }
+
+    /**
+     * Returns the earliest of the expressions' last possible fires.
+     */
+    @Override
+    public LocalDateTime lastPossibleFire() {
+        if (!isSatisfiable())
+            return null;
+        LocalDateTime last = null;
+        for (CronExpression expression : expressions) {
+            LocalDateTime t = expression.lastPossibleFire();
+            if (t != null && (last == null || t.isBefore(last)))
+                last = t;
+        }
+        return last;
+    }
+
+    @Override
+    int cost() {
+        return cost;
+    }
+
+    @Override
+    ChronoUnit resolution() {
+        return finest(expressions);
+    }
+
+    @Override
+    public String toString() {
+        return "(" + Joiner.on(") & (").join(expressions) + ")";
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (o == null || getClass() != o.getClass()) return false;
+        AndCronExpression that = (AndCronExpression) o;
+        return expressions.equals(that.expressions);
+    }
+
+    @Override
+    public int hashCode() {
+        return expressions.hashCode();
+    }
+}
@@ -0,0 +1,281 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2013 Anders Wisch
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package cron;
+
+import com.google.common.base.Charsets;
+import com.google.common.base.Preconditions;
+import com.google.common.collect.ImmutableSet;
+import com.google.common.hash.HashFunction;
+import com.google.common.hash.Hashing;
+import com.google.common.io.BaseEncoding;
+
+import java.time.ZonedDateTime;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * A schedule for running the same registrations on several nodes so that each one runs on exactly one of them.
+ * Registrations are split into a fixed number of partitions by a hash of their expressions. Nodes announce themselves
+ * in a shared {@link LeaseStore}, assign partitions to live nodes with a {@link ConsistentHash}, and hold a lease on
+ * every partition they run. A node only checks the expressions of partitions whose leases it holds, and stops
+ * checking a partition as soon as its lease may have run out, so when nodes join or leave only a few partitions move
+ * and no partition is ever run by two nodes that both see the same store.
+ */
+public class ClusteredCronSchedule {
+    private static final String MEMBER_PREFIX = "member-", PARTITION_PREFIX = "partition-";
+    private static final HashFunction HASH_FUNCTION = Hashing.murmur3_32();
+    private static final int ONE_MINUTE_IN_MILLISECONDS = 60000,
+            ONE_SECOND_IN_MILLISECONDS = 1000;
+
+    private final String node, memberLease;
+    private final LeaseStore leases;
+    private final ScheduledExecutorService executor;
+    private final CronSchedule[] partitions;
+    private final AtomicLongArray ownedUntilInNanoseconds;
+    private final long leaseDurationInMilliseconds;
+    private final int pointsPerMember, periodInMilliseconds;
+
+    private Ticker ticker;
+    private ScheduledFuture<?> heartbeat;
+
+    protected ClusteredCronSchedule(Builder b) {
+        node = b.node;
+        // node ids such as host:port need not be valid lease names, so the member lease spells them out in hex
+        memberLease = MEMBER_PREFIX + BaseEncoding.base16().lowerCase().encode(node.getBytes(Charsets.UTF_8));
+        leases = b.leases;
+        executor = b.executor;
+        leaseDurationInMilliseconds = b.leaseDurationInMilliseconds;
+        pointsPerMember = b.pointsPerMember;
+        periodInMilliseconds = b.seconds ? ONE_SECOND_IN_MILLISECONDS : ONE_MINUTE_IN_MILLISECONDS;
+        Executor runnables = b.runnables != null ? b.runnables : b.executor;
+        partitions = new CronSchedule[b.partitions];
+        for (int i = 0; i < partitions.length; i++)
+            partitions[i] = new CronSchedule(executor, runnables, b.seconds);
+        ownedUntilInNanoseconds = new AtomicLongArray(partitions.length);
+    }
+
+    public static Builder builder(String node, LeaseStore leases, ScheduledExecutorService executor) {
+        return new Builder(node, leases, executor);
+    }
+
+    /**
+     * Returns the partition the expression belongs to. This is the same on every node because it hashes the
+     * expression's string rather than relying on {@link Object#hashCode()}.
+     */
+    int partition(CronExpression expression) {
+        int hash = HASH_FUNCTION.hashString(expression.toString(), Charsets.UTF_8).asInt();
+        return Math.floorMod(hash, partitions.length);
+    }
+
+    public void add(CronExpression expression, Runnable runnable) {
+        partitions[partition(expression)].add(expression, runnable);
+    }
+
+    public void add(Registration registration) {
+        partitions[partition(registration.getExpression())].add(registration);
+    }
+
+    public void remove(CronExpression expression) {
+        partitions[partition(expression)].remove(expression);
+    }
+
+    public void remove(CronExpression expression, Runnable runnable) {
+        partitions[partition(expression)].remove(expression, runnable);
+    }
+
+    public Set<Integer> getOwnedPartitions() {
+        ImmutableSet.Builder<Integer> owned = ImmutableSet.builder();
+        for (int i = 0; i < partitions.length; i++)
+            if (isOwned(i))
+                owned.add(i);
+        return owned.build();
+    }
+
+    private boolean isOwned(int partition) {
+        long until = ownedUntilInNanoseconds.get(partition);
+        return until != 0 && until - System.nanoTime() > 0;
+    }
+
+    /**
+     * Returns the metrics of the partitions this node has run, merged together.
+     */
+    public ScheduleMetrics.Snapshot getMetrics() {
+        ScheduleMetrics.Snapshot merged = partitions[0].getMetrics();
+        for (int i = 1; i < partitions.length; i++)
+            merged = merged.merge(partitions[i].getMetrics());
+        return merged;
+    }
+
+    /**
+     * Renews this node's membership, works out which partitions it should own given the live members, and acquires
+     * or releases partition leases to match. Running nodes do this periodically, several times per lease duration.
+     */
+    public synchronized void rebalance() {
+        leases.tryAcquire(memberLease, node, leaseDurationInMilliseconds);
+        Set<String> members = new HashSet<>(leases.owners(MEMBER_PREFIX).values());
+        members.add(node);
+        ConsistentHash ring = new ConsistentHash(members, pointsPerMember);
+        for (int i = 0; i < partitions.length; i++) {
+            String lease = PARTITION_PREFIX + i;
+            if (node.equals(ring.owner(i))) {
+                // measured before acquiring, so the lease is never thought to last longer than it does
+                long start = System.nanoTime();
+                if (leases.tryAcquire(lease, node, leaseDurationInMilliseconds)) {
+                    // whatever ran while another node held the partition has already been run there
+                    if (!isOwned(i))
+                        partitions[i].forgetLastTick();
+                    ownedUntilInNanoseconds.set(i, start + TimeUnit.MILLISECONDS.toNanos(leaseDurationInMilliseconds));
+                } else
+                    ownedUntilInNanoseconds.set(i, 0);
+            } else if (ownedUntilInNanoseconds.getAndSet(i, 0) != 0) {
+                leases.release(lease, node);
+            }
+        }
+    }
+
+    /**
+     * Runs the partitions this node owns against the given time.
+     */
+    public void run(ZonedDateTime time) {
+        for (int i = 0; i < partitions.length; i++)
+            if (isOwned(i))
+                partitions[i].run(time);
+    }
+
+    void run(Tick tick) {
+        for (int i = 0; i < partitions.length; i++)
+            if (isOwned(i))
+                partitions[i].run(tick);
+    }
+
+    public synchronized boolean isStarted() {
+        return ticker != null && ticker.isStarted();
+    }
+
+    public synchronized void start() {
+        if (!isStarted()) {
+            rebalance();
+            heartbeat = executor.scheduleWithFixedDelay(new Runnable() {
+                @Override
+                public void run() {
+                    try {
+                        rebalance();
+                    } catch (RuntimeException | Error e) {
+                        // a failed heartbeat must not cancel the ones after it, which may well succeed
+                        Thread thread = Thread.currentThread();
+                        thread.getUncaughtExceptionHandler().uncaughtException(thread, e);
+                    }
+                }
+            }, leaseDurationInMilliseconds / 3, leaseDurationInMilliseconds / 3, TimeUnit.MILLISECONDS);
+            ticker = new Ticker(executor, periodInMilliseconds, new TickListener() {
+                @Override
+                public void onTick(Tick tick) {
+                    ClusteredCronSchedule.this.run(tick);
+                }
+            });
+            ticker.start();
+        }
+    }
+
+    /**
+     * Stops ticking and gives up this node's membership and partitions, so other nodes can take them over without
+     * waiting for the leases to run out.
+     */
+    public synchronized void stop() {
+        if (ticker != null) {
+            ticker.stop();
+            ticker = null;
+        }
+        if (heartbeat != null) {
+            heartbeat.cancel(false);
+            heartbeat = null;
+        }
+        for (int i = 0; i < partitions.length; i++)
+            if (ownedUntilInNanoseconds.getAndSet(i, 0) != 0)
+                leases.release(PARTITION_PREFIX + i, node);
+        leases.release(memberLease, node);
+    }
+
+    public static class Builder {
+        private final String node;
+        private final LeaseStore leases;
+        private final ScheduledExecutorService executor;
+        private Executor runnables;
+        private boolean seconds;
+        private int partitions, pointsPerMember;
+        private long leaseDurationInMilliseconds;
+
+        private Builder(String node, LeaseStore leases, ScheduledExecutorService executor) {
+            this.node = Preconditions.checkNotNull(node);
+            this.leases = Preconditions.checkNotNull(leases);
+            this.executor = Preconditions.checkNotNull(executor);
+            partitions = 64;
+            pointsPerMember = 100;
+            leaseDurationInMilliseconds = TimeUnit.SECONDS.toMillis(30);
+        }
+
+        /**
+         * Sets the executor matching runnables are handed to. By default they run on the scheduled executor.
+         */
+        public Builder withRunnables(Executor runnables) {
+            this.runnables = runnables;
+            return this;
+        }
+
+        public Builder withSecondsField(boolean secondsField) {
+            this.seconds = secondsField;
+            return this;
+        }
+
+        /**
+         * Sets the number of partitions registrations are split into. Every node must use the same number.
+         */
+        public Builder withPartitions(int partitions) {
+            Preconditions.checkArgument(partitions > 0, "At least one partition is required");
+            this.partitions = partitions;
+            return this;
+        }
+
+        public Builder withPointsPerMember(int pointsPerMember) {
+            Preconditions.checkArgument(pointsPerMember > 0, "At least one point per member is required");
+            this.pointsPerMember = pointsPerMember;
+            return this;
+        }
+
+        public Builder withLeaseDuration(long duration, TimeUnit unit) {
+            Preconditions.checkArgument(duration > 0, "Lease duration must be positive");
+            this.leaseDurationInMilliseconds = unit.toMillis(duration);
+            return this;
+        }
+
+        public ClusteredCronSchedule build() {
+            return new ClusteredCronSchedule(this);
+        }
+    }
+}
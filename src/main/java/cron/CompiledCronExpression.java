@@ -0,0 +1,207 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2013 Anders Wisch
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package cron;
+
+import com.google.common.base.Preconditions;
+
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.time.ZonedDateTime;
+import java.time.temporal.ChronoUnit;
+import java.util.BitSet;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.FutureTask;
+
+/**
+ * Renders another expression into a bitmap of the minutes of a year in one time zone, about 64KB, so that
+ * {@link #matches} is a bit test and {@link #nextTimeAfter} a {@link BitSet#nextSetBit}. The year looked up is rendered
+ * right away and the year after it in the background, which takes over when time moves into it. Earlier years and
+ * other zones are left to the expression.
+ */
+final class CompiledCronExpression extends CronExpression {
+    private final CronExpression expression;
+    private final ZoneId zone;
+    private final Executor executor;
+    private volatile Year current;
+    private volatile FutureTask<Year> next;
+
+    CompiledCronExpression(CronExpression expression, ZoneId zone, Executor executor) {
+        Preconditions.checkArgument(expression.resolution() == ChronoUnit.MINUTES,
+                "Only expressions without a seconds field can be compiled: %s", expression);
+        // matches once when first asked rather than at any time, so there is nothing to render
+        Preconditions.checkArgument(!(expression instanceof RebootCronExpression), "@reboot cannot be compiled");
+        this.expression = expression;
+        this.zone = Preconditions.checkNotNull(zone);
+        this.executor = Preconditions.checkNotNull(executor);
+    }
+
+    public ZoneId getZone() {
+        return zone;
+    }
+
+    @Override
+    public boolean matches(ZonedDateTime t) {
+        Year year = t.getZone().equals(zone) ? year(t.getYear()) : null;
+        int i = year == null ? -1 : year.index(t.toEpochSecond());
+        return i >= 0 && i < year.minutes ? year.bits.get(i) : expression.matches(t);
+    }
+
+    @Override
+    public ZonedDateTime nextTimeAfter(ZonedDateTime after) {
+        Year year = after.getZone().equals(zone) ? year(after.getYear()) : null;
+        if (year == null)
+            return expression.nextTimeAfter(after);
+        int i = year.bits.nextSetBit(year.index(after.toEpochSecond()) + 1);
+        if (i >= 0 && i < year.minutes)
+            return year.time(i);
+        // nothing left this year, so carry on from its last minute
+        Year following = following();
+        if (following == null || following.year != year.year + 1)
+            return expression.nextTimeAfter(year.time(year.minutes - 1));
+        i = following.bits.nextSetBit(0);
+        return i >= 0 && i < following.minutes ? following.time(i)
+                : expression.nextTimeAfter(following.time(following.minutes - 1));
+    }
+
+    /**
+     * Returns the bitmap of the given year, moving on to it if it is later than the current one, or null if it is
+     * earlier.
+     */
+    private Year year(int year) {
+        Year current = this.current;
+        if (current != null && current.year == year)
+            return current;
+        synchronized (this) {
+            current = this.current;
+            if (current == null) {
+                this.current = current = new Year(year);
+            } else if (current.year + 1 == year) {
+                this.current = current = get(next);
+            } else if (current.year < year) {
+                this.current = current = new Year(year);
+            } else {
+                return current.year == year ? current : null;
+            }
+            final int following = year + 1;
+            next = new FutureTask<>(new Callable<Year>() {
+                @Override
+                public Year call() {
+                    return new Year(following);
+                }
+            });
+            executor.execute(next);
+            return current;
+        }
+    }
+
+    /**
+     * Returns the bitmap of the year after the current one, waiting for it if needed.
+     */
+    private Year following() {
+        FutureTask<Year> next;
+        synchronized (this) {
+            next = this.next;
+        }
+        return next == null ? null : get(next);
+    }
+
+    private Year get(FutureTask<Year> future) {
+        // runs the rendering here if the executor has not got to it yet
+        future.run();
+        try {
+            return future.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException(e);
+        } catch (ExecutionException e) {
+            throw new IllegalStateException(e.getCause());
+        }
+    }
+
+    @Override
+    public boolean isSatisfiable() {
+        return expression.isSatisfiable();
+    }
+
+    @Override
+    public LocalDateTime lastPossibleFire() {
+        return expression.lastPossibleFire();
+    }
+
+    @Override
+    int cost() {
+        return 1;
+    }
+
+    @Override
+    public String toString() {
+        return expression.toString();
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (o == null || getClass() != o.getClass()) return false;
+        CompiledCronExpression that = (CompiledCronExpression) o;
+        return expression.equals(that.expression) && zone.equals(that.zone);
+    }
+
+    @Override
+    public int hashCode() {
+        return 31 * expression.hashCode() + zone.hashCode();
+    }
+
+    /**
+     * The minutes of one year at which the expression fires, counted from the instant the year starts.
+     */
+    private final class Year {
+        private final int year, minutes;
+        private final long start;
+        private final BitSet bits;
+
+        private Year(int year) {
+            this.year = year;
+            ZonedDateTime start = LocalDate.of(year, 1, 1).atStartOfDay(zone);
+            ZonedDateTime end = LocalDate.of(year + 1, 1, 1).atStartOfDay(zone);
+            this.start = start.toEpochSecond();
+            minutes = (int) ((end.toEpochSecond() - this.start) / 60);
+            bits = new BitSet(minutes);
+            for (ZonedDateTime t = expression.nextTimeAfter(start.minusSeconds(1)); t != null && t.isBefore(end);
+                 t = expression.nextTimeAfter(t))
+                bits.set(index(t.toEpochSecond()));
+        }
+
+        int index(long epochSecond) {
+            return (int) Math.floorDiv(epochSecond - start, 60L);
+        }
+
+        ZonedDateTime time(int index) {
+            return ZonedDateTime.ofInstant(Instant.ofEpochSecond(start + index * 60L), zone);
+        }
+    }
+}
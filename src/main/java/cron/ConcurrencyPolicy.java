@@ -0,0 +1,110 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2013 Anders Wisch
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package cron;
+
+import com.google.common.base.Preconditions;
+
+/**
+ * How many runs of one registration a {@link CronSchedule} lets overlap. When a registration's expression matches
+ * while as many runs as the policy allows are still going, the new run is either queued to start as soon as one of
+ * them finishes or skipped and counted in the schedule's metrics.
+ */
+public final class ConcurrencyPolicy {
+    // leaves room in an int to count runs in flight next to a flag for a queued run
+    private static final int MAX_IN_FLIGHT_LIMIT = 1 << 29;
+
+    private static final ConcurrencyPolicy UNBOUNDED = new ConcurrencyPolicy(Integer.MAX_VALUE, false),
+            SKIP_IF_RUNNING = new ConcurrencyPolicy(1, false),
+            QUEUE_ONE = new ConcurrencyPolicy(1, true);
+
+    private final int maxInFlight;
+    private final boolean queueOne;
+
+    private ConcurrencyPolicy(int maxInFlight, boolean queueOne) {
+        this.maxInFlight = maxInFlight;
+        this.queueOne = queueOne;
+    }
+
+    /**
+     * Runs every time the expression matches, however many runs are still going. This is the default.
+     */
+    public static ConcurrencyPolicy unbounded() {
+        return UNBOUNDED;
+    }
+
+    /**
+     * Skips a run if the previous one has not finished.
+     */
+    public static ConcurrencyPolicy skipIfRunning() {
+        return SKIP_IF_RUNNING;
+    }
+
+    /**
+     * Keeps at most one run waiting for the previous one to finish and skips any beyond that.
+     */
+    public static ConcurrencyPolicy queueOne() {
+        return QUEUE_ONE;
+    }
+
+    /**
+     * Lets up to the given number of runs go at once and skips any beyond that.
+     */
+    public static ConcurrencyPolicy maxInFlight(int maxInFlight) {
+        Preconditions.checkArgument(maxInFlight > 0 && maxInFlight <= MAX_IN_FLIGHT_LIMIT,
+                "Max in flight must be between 1 and %s", MAX_IN_FLIGHT_LIMIT);
+        return maxInFlight == 1 ? SKIP_IF_RUNNING : new ConcurrencyPolicy(maxInFlight, false);
+    }
+
+    public boolean isUnbounded() {
+        return this == UNBOUNDED;
+    }
+
+    public int getMaxInFlight() {
+        return maxInFlight;
+    }
+
+    public boolean isQueueOne() {
+        return queueOne;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (o == null || getClass() != o.getClass()) return false;
+        ConcurrencyPolicy that = (ConcurrencyPolicy) o;
+        return maxInFlight == that.maxInFlight && queueOne == that.queueOne;
+    }
+
+    @Override
+    public int hashCode() {
+        return 31 * maxInFlight + (queueOne ? 1 : 0);
+    }
+
+    @Override
+    public String toString() {
+        if (isUnbounded())
+            return "ConcurrencyPolicy{unbounded}";
+        return "ConcurrencyPolicy{maxInFlight=" + maxInFlight + ", queueOne=" + queueOne + '}';
+    }
+}
@@ -0,0 +1,75 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2013 Anders Wisch
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package cron;
+
+import com.google.common.base.Charsets;
+import com.google.common.base.Preconditions;
+import com.google.common.collect.ImmutableSortedMap;
+import com.google.common.hash.HashFunction;
+import com.google.common.hash.Hashing;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.NavigableMap;
+
+/**
+ * Assigns partitions to members by placing both on a hash ring. Every member is placed at many points on the ring so
+ * that partitions are spread evenly, and when a member joins or leaves only the partitions next to its points change
+ * hands.
+ */
+public final class ConsistentHash {
+    private static final HashFunction HASH_FUNCTION = Hashing.murmur3_32();
+
+    private final NavigableMap<Integer, String> ring;
+
+    public ConsistentHash(Iterable<String> members, int pointsPerMember) {
+        Preconditions.checkArgument(pointsPerMember > 0, "At least one point per member is required");
+        Map<Integer, String> points = new HashMap<>();
+        for (String member : members) {
+            for (int i = 0; i < pointsPerMember; i++) {
+                int point = HASH_FUNCTION.newHasher().putString(member, Charsets.UTF_8).putInt(i).hash().asInt();
+                // the smaller name wins a collision, so every node builds the same ring
+                String existing = points.get(point);
+                if (existing == null || member.compareTo(existing) < 0)
+                    points.put(point, member);
+            }
+        }
+        ring = ImmutableSortedMap.copyOf(points);
+    }
+
+    public boolean isEmpty() {
+        return ring.isEmpty();
+    }
+
+    /**
+     * Returns the member that owns the given partition, or null if there are no members.
+     */
+    public String owner(int partition) {
+        if (ring.isEmpty())
+            return null;
+        int point = HASH_FUNCTION.hashInt(partition).asInt();
+        Map.Entry<Integer, String> entry = ring.ceilingEntry(point);
+        return entry != null ? entry.getValue() : ring.firstEntry().getValue();
+    }
+}
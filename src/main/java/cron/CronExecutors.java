@@ -0,0 +1,60 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2013 Anders Wisch
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package cron;
+
+import java.time.Clock;
+import java.time.ZoneId;
+import java.util.concurrent.ScheduledExecutorService;
+
+/**
+ * Factory methods for executors that run tasks at the times cron expressions match.
+ */
+public final class CronExecutors {
+    private CronExecutors() {
+    }
+
+    /**
+     * Decorates an executor so that tasks can be scheduled by cron expression, evaluated in the system's time zone.
+     */
+    public static CronScheduledExecutorService wrap(ScheduledExecutorService executor) {
+        return wrap(executor, ZoneId.systemDefault());
+    }
+
+    public static CronScheduledExecutorService wrap(ScheduledExecutorService executor, ZoneId zone) {
+        return wrap(executor, Clock.system(zone));
+    }
+
+    /**
+     * Decorates an executor so that tasks can be scheduled by cron expression, with fire times read from the given
+     * clock and evaluated in its zone.
+     */
+    public static CronScheduledExecutorService wrap(ScheduledExecutorService executor, Clock clock) {
+        if (executor instanceof CronScheduledExecutorService) {
+            CronScheduledExecutorService wrapped = (CronScheduledExecutorService) executor;
+            if (wrapped.getClock().equals(clock))
+                return wrapped;
+        }
+        return new CronScheduledExecutorService(executor, clock);
+    }
+}
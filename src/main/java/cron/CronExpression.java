@@ -24,16 +24,179 @@
 package cron;
 
 import com.google.common.base.Preconditions;
+import com.google.common.collect.ImmutableList;
 import com.google.common.collect.ImmutableMap;
 
+import java.time.LocalDateTime;
+import java.time.ZoneId;
 import java.time.ZonedDateTime;
+import java.time.temporal.ChronoUnit;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.List;
 import java.util.Map;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ForkJoinPool;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 
 public abstract class CronExpression {
+    /**
+     * How many times the default {@link #nextTimeAfter(ZonedDateTime)} tries before giving up: a leap year of minutes.
+     */
+    private static final int SEARCH_LIMIT = 366 * 24 * 60;
+
     public abstract boolean matches(ZonedDateTime t);
 
+    /**
+     * Returns the earliest time after the given one that this expression matches, in the same time zone, or null if
+     * there is none. By default this steps through times one {@link #resolution()} at a time, calling {@link #matches}
+     * at most 527,040 times, which covers a year at a resolution of minutes but less than a week at one of seconds,
+     * and returns null if none of them match. Expressions that can find their next time directly should override it.
+     */
+    public ZonedDateTime nextTimeAfter(ZonedDateTime after) {
+        ChronoUnit unit = resolution();
+        ZonedDateTime t = after.truncatedTo(unit);
+        for (int i = 0; i < SEARCH_LIMIT; i++) {
+            t = t.plus(1, unit);
+            if (matches(t))
+                return t;
+        }
+        return null;
+    }
+
+    /**
+     * Returns whether any time at all can match this expression. Expressions that cannot tell say that they can.
+     */
+    public boolean isSatisfiable() {
+        return true;
+    }
+
+    /**
+     * Returns the local time after which this expression never matches again, or null if it has no such end or never
+     * matches at all. Composite expressions may return a time earlier than their last match, but never later.
+     */
+    public LocalDateTime lastPossibleFire() {
+        return null;
+    }
+
+    /**
+     * Returns how many times this expression matches after the first time and up to and including the second, in the
+     * time zone of the first.
+     */
+    public long count(ZonedDateTime from, ZonedDateTime to) {
+        long count = 0;
+        for (ZonedDateTime t = nextTimeAfter(from); t != null && !t.isAfter(to); t = nextTimeAfter(t))
+            count++;
+        return count;
+    }
+
+    /**
+     * Returns an expression that matches like this one, except for local times that daylight saving time transitions
+     * skip or repeat, which are treated according to the given policies in both {@link #matches} and
+     * {@link #nextTimeAfter}.
+     */
+    public CronExpression withTransitionPolicies(GapPolicy gapPolicy, OverlapPolicy overlapPolicy) {
+        return new TransitionCronExpression(this, gapPolicy, overlapPolicy);
+    }
+
+    /**
+     * Returns an expression that matches like this one, but renders it into a bitmap of the minutes of the current
+     * year in the given zone, about 64KB, rendering the next year on the common fork-join pool. Matching a time in
+     * that zone then costs one bit test. Only expressions without a seconds field can be compiled.
+     */
+    public CronExpression compile(ZoneId zone) {
+        return compile(zone, ForkJoinPool.commonPool());
+    }
+
+    /**
+     * Like {@link #compile(ZoneId)}, rendering the next year on the given executor.
+     */
+    public CronExpression compile(ZoneId zone, Executor executor) {
+        return new CompiledCronExpression(this, zone, executor);
+    }
+
+    /**
+     * Returns an expression that matches the times both this expression and the given one match. Where both are
+     * plain cron strings their fields are intersected into a single expression, otherwise the result leapfrogs the
+     * two expressions' next times.
+     */
+    public CronExpression intersect(CronExpression other) {
+        return new AndCronExpression(this, other);
+    }
+
+    /**
+     * Returns the first time after the given one that both expressions match, or null if they never match together.
+     */
+    public static ZonedDateTime firstCoincidence(CronExpression a, CronExpression b, ZonedDateTime after) {
+        return a.intersect(b).nextTimeAfter(after);
+    }
+
+    /**
+     * Returns whether the two expressions will ever match the same time from now on.
+     */
+    public static boolean coincides(CronExpression a, CronExpression b) {
+        return firstCoincidence(a, b, ZonedDateTime.now()) != null;
+    }
+
+    /**
+     * Returns an expression that matches the times all of the given expressions match, for example weekdays every
+     * quarter hour except the first Monday of the month:
+     * {@code and(parse("0,15,30,45 9-17 * * 1-5"), not(parse("* * 1-7 * 1")))}.
+     */
+    public static CronExpression and(CronExpression... expressions) {
+        return new AndCronExpression(Arrays.asList(expressions));
+    }
+
+    /**
+     * Returns an expression that matches the times any of the given expressions match.
+     */
+    public static CronExpression or(CronExpression... expressions) {
+        return new OrCronExpression(Arrays.asList(expressions));
+    }
+
+    /**
+     * Returns an expression that matches the times the given expression does not match.
+     */
+    public static CronExpression not(CronExpression expression) {
+        return new NotCronExpression(expression);
+    }
+
+    /**
+     * Estimates how expensive {@link #matches} is, so that composite expressions can try their cheapest expressions
+     * first. Expressions that do not say are assumed to be expensive.
+     */
+    int cost() {
+        return 8;
+    }
+
+    /**
+     * The smallest unit of time in which this expression's matches can differ.
+     */
+    ChronoUnit resolution() {
+        return ChronoUnit.MINUTES;
+    }
+
+    static ImmutableList<CronExpression> byCost(Collection<CronExpression> expressions) {
+        CronExpression[] sorted = expressions.toArray(new CronExpression[expressions.size()]);
+        Arrays.sort(sorted, new Comparator<CronExpression>() {
+            @Override
+            public int compare(CronExpression a, CronExpression b) {
+                return Integer.compare(a.cost(), b.cost());
+            }
+        });
+        return ImmutableList.copyOf(sorted);
+    }
+
+    static ChronoUnit finest(List<CronExpression> expressions) {
+        ChronoUnit finest = ChronoUnit.FOREVER;
+        for (CronExpression expression : expressions)
+            if (expression.resolution().compareTo(finest) < 0)
+                finest = expression.resolution();
+        return finest;
+    }
+
     private static final String YEARLY = "0 0 1 1 *",
             MONTHLY = "0 0 1 * *",
             WEEKLY = "0 0 * * 0",
@@ -74,24 +237,26 @@ public abstract class CronExpression {
     }
 
     public static boolean isValid(String s) {
-        return isValid(s, DEFAULT_ONE_BASED_DAY_OF_WEEK, DEFAULT_SECONDS, DEFAULT_ALLOW_BOTH_DAYS);
+        return isValid(s, DEFAULT_ONE_BASED_DAY_OF_WEEK, DEFAULT_SECONDS, DEFAULT_ALLOW_BOTH_DAYS, null);
     }
 
     public static CronExpression parse(String s) {
-        return parse(s, DEFAULT_ONE_BASED_DAY_OF_WEEK, DEFAULT_SECONDS, DEFAULT_ALLOW_BOTH_DAYS);
+        return parse(s, DEFAULT_ONE_BASED_DAY_OF_WEEK, DEFAULT_SECONDS, DEFAULT_ALLOW_BOTH_DAYS, null);
     }
 
-    private static boolean isValid(String s, boolean oneBasedDayOfWeek, boolean seconds, boolean allowBothDays) {
+    private static boolean isValid(String s, boolean oneBasedDayOfWeek, boolean seconds, boolean allowBothDays,
+                                   String hashKey) {
         boolean valid = false;
         try {
-            parse(s, oneBasedDayOfWeek, seconds, allowBothDays);
+            parse(s, oneBasedDayOfWeek, seconds, allowBothDays, hashKey);
             valid = true;
         } catch (Exception e) {
         }
         return valid;
     }
 
-    private static CronExpression parse(String s, boolean oneBasedDayOfWeek, boolean seconds, boolean allowBothDays) {
+    private static CronExpression parse(String s, boolean oneBasedDayOfWeek, boolean seconds, boolean allowBothDays,
+                                        String hashKey) {
         Preconditions.checkNotNull(s);
         if (s.charAt(0) == '@') {
             Matcher aliasMatcher = ALIAS_PATTERN.matcher(s);
@@ -103,7 +268,7 @@ public abstract class CronExpression {
                     return new RebootCronExpression();
             }
         }
-        return new DefaultCronExpression(s, seconds, oneBasedDayOfWeek, allowBothDays);
+        return new DefaultCronExpression(s, seconds, oneBasedDayOfWeek, allowBothDays, hashKey);
     }
 
     public static Parser parser() {
@@ -112,6 +277,7 @@ public abstract class CronExpression {
 
     public static class Parser {
         private boolean oneBasedDayOfWeek, seconds, allowBothDays;
+        private String hashKey;
 
         private Parser() {
             oneBasedDayOfWeek = DEFAULT_ONE_BASED_DAY_OF_WEEK;
@@ -120,11 +286,11 @@ public abstract class CronExpression {
         }
 
         public boolean isValid(String s) {
-            return CronExpression.isValid(s, oneBasedDayOfWeek, seconds, allowBothDays);
+            return CronExpression.isValid(s, oneBasedDayOfWeek, seconds, allowBothDays, hashKey);
         }
 
         public CronExpression parse(String s) {
-            return CronExpression.parse(s, oneBasedDayOfWeek, seconds, allowBothDays);
+            return CronExpression.parse(s, oneBasedDayOfWeek, seconds, allowBothDays, hashKey);
         }
 
         public Parser withOneBasedDayOfWeek(boolean oneBasedDayOfWeek) {
@@ -141,5 +307,16 @@ public abstract class CronExpression {
             this.allowBothDays = allowBothDayFields;
             return this;
         }
+
+        /**
+         * Sets the key that {@code H} is resolved with. {@code H} in a field stands for one value picked by hashing
+         * the key, {@code H(0-29)} for one value within a range and {@code H/15} for every fifteenth value starting
+         * from a hashed offset, so expressions like {@code H * * * *} registered for many different keys spread
+         * evenly over the hour while each key keeps a fixed schedule.
+         */
+        public Parser withHashKey(String hashKey) {
+            this.hashKey = hashKey;
+            return this;
+        }
     }
 }
@@ -0,0 +1,147 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2013 Anders Wisch
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package cron;
+
+import com.google.common.base.Preconditions;
+
+import java.time.ZonedDateTime;
+import java.util.Arrays;
+import java.util.BitSet;
+
+/**
+ * Matches a time against a large number of expressions at once. Instead of an object per expression and per field,
+ * the table keeps one column of masks per field, indexed by the order in which expressions were added, so matching is
+ * a branch-free scan over arrays of longs that the JIT can unroll and vectorize.
+ * <p>
+ * The masks of an expression with a year, or with {@code L}, {@code W} or {@code #}, cannot say which days it fires
+ * on. Such expressions, as well as any that are not parsed from a string, match every day in the columns and are kept
+ * in a side column as well, where the few that survive the scan are checked against the time itself.
+ */
+public final class CronExpressionTable {
+    private final int size;
+    private final long[] seconds, minutes, hours, daysOfMonth, months, daysOfWeek;
+    private final int[] sideIds;
+    private final CronExpression[] sideExpressions;
+
+    private CronExpressionTable(Builder b) {
+        size = b.size;
+        seconds = Arrays.copyOf(b.seconds, size);
+        minutes = Arrays.copyOf(b.minutes, size);
+        hours = Arrays.copyOf(b.hours, size);
+        daysOfMonth = Arrays.copyOf(b.daysOfMonth, size);
+        months = Arrays.copyOf(b.months, size);
+        daysOfWeek = Arrays.copyOf(b.daysOfWeek, size);
+        sideIds = Arrays.copyOf(b.sideIds, b.sideSize);
+        sideExpressions = Arrays.copyOf(b.sideExpressions, b.sideSize);
+    }
+
+    public static Builder builder() {
+        return new Builder();
+    }
+
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Returns the ids of the expressions that match the given time, where an expression's id is the number of
+     * expressions added to the builder before it.
+     */
+    public BitSet matching(ZonedDateTime t) {
+        int second = t.getSecond(), minute = t.getMinute(), hour = t.getHour();
+        int dayOfMonth = t.getDayOfMonth(), month = t.getMonthValue(), dayOfWeek = t.getDayOfWeek().getValue() % 7;
+        long[] words = new long[(size + 63) >>> 6];
+        for (int i = 0; i < size; i++) {
+            long match = seconds[i] >>> second & minutes[i] >>> minute & hours[i] >>> hour
+                    & daysOfMonth[i] >>> dayOfMonth & months[i] >>> month & daysOfWeek[i] >>> dayOfWeek & 1L;
+            words[i >>> 6] |= match << i;
+        }
+        BitSet matching = BitSet.valueOf(words);
+        for (int i = 0; i < sideIds.length; i++)
+            if (matching.get(sideIds[i]) && !sideExpressions[i].matches(t))
+                matching.clear(sideIds[i]);
+        return matching;
+    }
+
+    public static class Builder {
+        private int size, sideSize;
+        private long[] seconds, minutes, hours, daysOfMonth, months, daysOfWeek;
+        private int[] sideIds;
+        private CronExpression[] sideExpressions;
+
+        private Builder() {
+            seconds = minutes = hours = daysOfMonth = months = daysOfWeek = new long[0];
+            sideIds = new int[0];
+            sideExpressions = new CronExpression[0];
+        }
+
+        public Builder add(CronExpression expression) {
+            Preconditions.checkNotNull(expression);
+            if (size == seconds.length) {
+                int capacity = Math.max(16, size * 2);
+                seconds = Arrays.copyOf(seconds, capacity);
+                minutes = Arrays.copyOf(minutes, capacity);
+                hours = Arrays.copyOf(hours, capacity);
+                daysOfMonth = Arrays.copyOf(daysOfMonth, capacity);
+                months = Arrays.copyOf(months, capacity);
+                daysOfWeek = Arrays.copyOf(daysOfWeek, capacity);
+            }
+            long[] masks = {-1L, -1L, -1L, -1L, -1L, -1L};
+            boolean side = true;
+            if (expression instanceof DefaultCronExpression) {
+                DefaultCronExpression e = (DefaultCronExpression) expression;
+                masks = e.masks();
+                side = !e.hasPlainDays();
+                if (side)
+                    masks[3] = masks[5] = -1L;
+            }
+            seconds[size] = masks[0];
+            minutes[size] = masks[1];
+            hours[size] = masks[2];
+            daysOfMonth[size] = masks[3];
+            months[size] = masks[4];
+            daysOfWeek[size] = masks[5];
+            if (side) {
+                if (sideSize == sideIds.length) {
+                    sideIds = Arrays.copyOf(sideIds, Math.max(16, sideSize * 2));
+                    sideExpressions = Arrays.copyOf(sideExpressions, sideIds.length);
+                }
+                sideIds[sideSize] = size;
+                sideExpressions[sideSize++] = expression;
+            }
+            size++;
+            return this;
+        }
+
+        public Builder addAll(Iterable<? extends CronExpression> expressions) {
+            for (CronExpression expression : expressions)
+                add(expression);
+            return this;
+        }
+
+        public CronExpressionTable build() {
+            return new CronExpressionTable(this);
+        }
+    }
+}
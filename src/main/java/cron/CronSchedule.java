@@ -23,13 +23,26 @@
  */
 package cron;
 
+import com.google.common.base.Preconditions;
 import com.google.common.collect.HashMultimap;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableSetMultimap;
 import com.google.common.collect.Multimap;
-import com.google.common.collect.Multimaps;
 
+import java.time.Clock;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
 import java.time.ZonedDateTime;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executor;
 import java.util.concurrent.ScheduledExecutorService;
-import java.util.concurrent.ScheduledFuture;
 import java.util.concurrent.TimeUnit;
 
 public class CronSchedule {
@@ -37,65 +50,518 @@ public class CronSchedule {
             ONE_SECOND_IN_MILLISECONDS = 1000;
 
     private final ScheduledExecutorService executor;
-    private final Multimap<CronExpression, Runnable> runnables;
+    private final BatchExecutor dispatcher;
+    // registrations by zone, where the null zone stands for the zone of the time being run
+    private final Map<ZoneId, Multimap<CronExpression, Registration>> registrations;
+    // the local times after which registered expressions with an end can no longer fire
+    private final Map<CronExpression, LocalDateTime> lastFires;
+    private final List<Registration> unsatisfiable;
     private final int periodInMilliseconds;
+    private final List<TickListener> listeners;
+    private final List<FireListener> fireListeners;
+    private final ScheduleMetrics metrics;
+    private final Clock clock;
 
-    private ScheduledFuture<?> future;
+    private volatile ScheduleJournal journal;
+    private Ticker ticker;
+    private volatile long lastTickInMilliseconds = Long.MIN_VALUE;
 
     public CronSchedule(ScheduledExecutorService s) {
         this(s, false);
     }
 
     public CronSchedule(ScheduledExecutorService s, boolean seconds) {
-        executor = s;
-        Multimap<CronExpression, Runnable> wrapped = HashMultimap.create();
-        runnables = Multimaps.synchronizedMultimap(wrapped);
+        this(s, s, seconds);
+    }
+
+    /**
+     * Creates a schedule that ticks on one executor and runs matching runnables on another, so that long-running
+     * runnables cannot hold up ticks. Give it a single-threaded scheduled executor for ticks and, for blocking work,
+     * {@link VirtualThreads#newThreadPerTaskExecutor()} for runnables. A {@link BatchExecutor}, such as a
+     * {@link WorkerPool}, is given all of the runnables matched by a tick in one call.
+     */
+    public CronSchedule(ScheduledExecutorService ticks, Executor runnables, boolean seconds) {
+        this(ticks, runnables, seconds, Clock.systemDefaultZone());
+    }
+
+    /**
+     * Creates a schedule that reads the time, and the zone to run ticks in, from the given clock. The ticks executor
+     * remains the timer source that decides when ticks run, so a schedule on a {@link SimulatedClock} is usually
+     * driven by a {@link ScheduleSimulator} rather than started.
+     */
+    public CronSchedule(ScheduledExecutorService ticks, Executor runnables, boolean seconds, Clock clock) {
+        this.clock = Preconditions.checkNotNull(clock);
+        executor = ticks;
+        dispatcher = runnables instanceof BatchExecutor ? (BatchExecutor) runnables : new OneByOne(runnables);
+        registrations = new HashMap<>();
+        lastFires = new HashMap<>();
+        unsatisfiable = new CopyOnWriteArrayList<>();
         periodInMilliseconds = seconds ? ONE_SECOND_IN_MILLISECONDS : ONE_MINUTE_IN_MILLISECONDS;
+        listeners = new CopyOnWriteArrayList<>();
+        fireListeners = new CopyOnWriteArrayList<>();
+        metrics = new ScheduleMetrics();
+    }
+
+    public Clock getClock() {
+        return clock;
+    }
+
+    public ScheduleMetrics.Snapshot getMetrics() {
+        return metrics.snapshot(size());
+    }
+
+    /**
+     * Registers a listener that is told about every tick after its matching runnables have been submitted, for
+     * example to alert when ticks run late or the wall clock jumps.
+     */
+    public void addTickListener(TickListener listener) {
+        listeners.add(listener);
+    }
+
+    public void removeTickListener(TickListener listener) {
+        listeners.remove(listener);
+    }
+
+    /**
+     * Registers a listener that is told about every time a registration's expression matched, after the runnables
+     * have been submitted, whether or not the registration's {@link ConcurrencyPolicy} let its runnable run.
+     */
+    public void addFireListener(FireListener listener) {
+        fireListeners.add(listener);
+    }
+
+    public void removeFireListener(FireListener listener) {
+        fireListeners.remove(listener);
     }
 
     public void add(CronExpression expression, Runnable runnable) {
-        runnables.put(expression, runnable);
+        add(Registration.builder(expression, runnable).build());
+    }
+
+    /**
+     * Registers a runnable whose expression is matched against local times in the given zone rather than the zone of
+     * the time being run.
+     */
+    public void add(CronExpression expression, ZoneId zone, Runnable runnable) {
+        add(Registration.builder(expression, runnable).withZone(zone).build());
+    }
+
+    /**
+     * Registers a runnable. Registrations whose expressions can never fire are not added but kept aside, see
+     * {@link #getUnsatisfiable()}, and those whose expressions stop firing are removed once they have.
+     */
+    public void add(Registration registration) {
+        if (!registration.getExpression().isSatisfiable()) {
+            unsatisfiable.add(registration);
+            metrics.recordUnsatisfiable();
+            return;
+        }
+        synchronized (registrations) {
+            ScheduleJournal journal = this.journal;
+            if (journal != null && registration.getId() != null)
+                journal.registered(registration, clock.millis());
+            put(registration);
+        }
+    }
+
+    private void put(Registration registration) {
+        Multimap<CronExpression, Registration> zone = registrations.get(registration.getZone());
+        if (zone == null)
+            registrations.put(registration.getZone(), zone = HashMultimap.create());
+        zone.put(registration.getExpression(), registration);
+        LocalDateTime last = registration.getExpression().lastPossibleFire();
+        if (last != null)
+            lastFires.put(registration.getExpression(), last);
+    }
+
+    /**
+     * Returns the registrations that were not added because their expressions can never fire.
+     */
+    public List<Registration> getUnsatisfiable() {
+        return ImmutableList.copyOf(unsatisfiable);
     }
 
     public void remove(CronExpression expression) {
-        runnables.removeAll(expression);
+        remove(expression, null);
     }
 
     public void remove(CronExpression expression, Runnable runnable) {
-        runnables.remove(expression, runnable);
+        synchronized (registrations) {
+            ScheduleJournal journal = this.journal;
+            for (Iterator<Multimap<CronExpression, Registration>> zones = registrations.values().iterator(); zones.hasNext(); ) {
+                Multimap<CronExpression, Registration> zone = zones.next();
+                for (Iterator<Registration> i = zone.get(expression).iterator(); i.hasNext(); ) {
+                    Registration registration = i.next();
+                    if (runnable == null || registration.getRunnable().equals(runnable)) {
+                        if (journal != null && registration.getId() != null)
+                            journal.removed(registration.getId());
+                        i.remove();
+                    }
+                }
+                if (zone.isEmpty())
+                    zones.remove();
+            }
+            if (!isRegistered(expression))
+                lastFires.remove(expression);
+        }
+    }
+
+    /**
+     * Removes the registrations whose expressions cannot fire at or after the given time.
+     */
+    private void retire(ZonedDateTime time) {
+        if (lastFires.isEmpty())
+            return;
+        ScheduleJournal journal = this.journal;
+        int retired = 0;
+        Iterator<Map.Entry<ZoneId, Multimap<CronExpression, Registration>>> zones = registrations.entrySet().iterator();
+        while (zones.hasNext()) {
+            Map.Entry<ZoneId, Multimap<CronExpression, Registration>> zone = zones.next();
+            LocalDateTime local = inZone(time, zone.getKey()).toLocalDateTime();
+            for (Map.Entry<CronExpression, LocalDateTime> last : lastFires.entrySet()) {
+                if (local.isAfter(last.getValue())) {
+                    for (Registration registration : zone.getValue().removeAll(last.getKey())) {
+                        if (journal != null && registration.getId() != null)
+                            journal.removed(registration.getId());
+                        retired++;
+                    }
+                }
+            }
+            if (zone.getValue().isEmpty())
+                zones.remove();
+        }
+        if (retired > 0) {
+            for (Iterator<CronExpression> i = lastFires.keySet().iterator(); i.hasNext(); )
+                if (!isRegistered(i.next()))
+                    i.remove();
+            metrics.recordRetired(retired);
+        }
     }
 
-    public boolean isStarted() {
-        return future != null && !future.isCancelled() && !future.isDone();
+    private boolean isRegistered(CronExpression expression) {
+        for (Multimap<CronExpression, Registration> zone : registrations.values())
+            if (zone.containsKey(expression))
+                return true;
+        return false;
+    }
+
+    private int size() {
+        synchronized (registrations) {
+            int size = 0;
+            for (Multimap<CronExpression, Registration> zone : registrations.values())
+                size += zone.size();
+            return size;
+        }
+    }
+
+    /**
+     * Restores the registrations recorded in the journal, runs the fires they missed while the schedule was not
+     * running according to their {@link MisfirePolicy}, and from then on records registrations with ids, their
+     * removal and every fire they complete in the journal. Fires are missed since a registration last fired or, if it
+     * never did, since it was made. Registrations that can never fire are set aside as {@link #add} does. Call this
+     * before adding anything else or starting.
+     */
+    public void recover(ScheduleJournal journal, ScheduleJournal.Resolver resolver) {
+        ZonedDateTime now = ZonedDateTime.now(clock);
+        long scheduled = System.nanoTime();
+        List<Runnable> batch = new ArrayList<>();
+        int skipped = 0;
+        synchronized (registrations) {
+            for (ScheduleJournal.Entry entry : journal.entries()) {
+                Registration registration = resolver.resolve(entry);
+                if (registration == null)
+                    continue;
+                Preconditions.checkArgument(entry.getId().equals(registration.getId()),
+                        "Resolved registration has the wrong id: %s", registration.getId());
+                if (!registration.getExpression().isSatisfiable()) {
+                    unsatisfiable.add(registration);
+                    metrics.recordUnsatisfiable();
+                    journal.removed(registration.getId());
+                    continue;
+                }
+                put(registration);
+                int limit = timesToRun(registration, Integer.MAX_VALUE);
+                if (limit > 0) {
+                    ZonedDateTime local = inZone(now, registration.getZone());
+                    // a registration that never fired catches up from when it was made
+                    Instant last = entry.getLastFireTime() != null ? entry.getLastFireTime() : entry.getRegistrationTime();
+                    int missed = (int) Math.min(registration.getExpression().count(
+                            ZonedDateTime.ofInstant(last, local.getZone()), local.minusNanos(1)), limit);
+                    for (int i = timesToRun(registration, missed); i > 0; i--)
+                        if (!enqueue(batch, registration, new Journaled(journal, registration, now), scheduled))
+                            skipped++;
+                }
+            }
+            this.journal = journal;
+        }
+        dispatch(batch, skipped);
+    }
+
+    public synchronized boolean isStarted() {
+        return ticker != null && ticker.isStarted();
     }
 
     public synchronized void start() {
         if (!isStarted()) {
-            long untilNextPeriod = System.currentTimeMillis() % periodInMilliseconds;
-            future = executor.scheduleAtFixedRate(new Runnable() {
+            ticker = new Ticker(executor, periodInMilliseconds, new TickListener() {
                 @Override
-                public void run() {
-                    CronSchedule.this.run();
+                public void onTick(Tick tick) {
+                    CronSchedule.this.run(tick);
                 }
-            }, untilNextPeriod, periodInMilliseconds, TimeUnit.MILLISECONDS);
+            }, clock);
+            ticker.start();
         }
     }
 
     public void run() {
-        run(ZonedDateTime.now());
+        run(ZonedDateTime.now(clock));
+    }
+
+    /**
+     * Runs the latest boundary that has passed, unless it has already been run, which happens when the wall clock is
+     * set back. Boundaries skipped since the previous tick, because the process was paused or the wall clock jumped
+     * forward, are handed to {@link #runMissed(ZonedDateTime, ZonedDateTime)}.
+     */
+    void run(Tick tick) {
+        long actual = tick.getActualTime().toEpochMilli();
+        long time = Math.max(tick.getTime().toEpochMilli(), actual - Math.floorMod(actual, periodInMilliseconds));
+        if (time > lastTickInMilliseconds) {
+            if (lastTickInMilliseconds != Long.MIN_VALUE && time - lastTickInMilliseconds > periodInMilliseconds)
+                runMissed(atClockZone(lastTickInMilliseconds), atClockZone(time));
+            lastTickInMilliseconds = time;
+            run(atClockZone(time));
+        }
+        metrics.recordLateness(tick.getLateness(TimeUnit.NANOSECONDS));
+        for (TickListener listener : listeners)
+            listener.onTick(tick);
+    }
+
+    /**
+     * Makes the next tick run on its own, without catching up on the boundaries since the last one. Used when runs
+     * between the two were another schedule's job, such as a partition that another node owned in the meantime.
+     */
+    void forgetLastTick() {
+        lastTickInMilliseconds = Long.MIN_VALUE;
     }
 
     public void run(ZonedDateTime time) {
-        for (CronExpression expression : runnables.keySet())
-            if (expression.matches(time))
-                for (Runnable runnable : runnables.get(expression))
-                    executor.submit(runnable);
+        List<Runnable> batch = new ArrayList<>();
+        List<Registration> fired = fireListeners.isEmpty() ? null : new ArrayList<Registration>();
+        int evaluated = 0, matched = 0, skipped = 0;
+        Object event = FlightRecorderEvents.beginTick();
+        long start = System.nanoTime(), scheduled = toNanoTime(time, start);
+        synchronized (registrations) {
+            retire(time);
+            for (Map.Entry<ZoneId, Multimap<CronExpression, Registration>> zone : registrations.entrySet()) {
+                // converted once for all of the zone's expressions
+                ZonedDateTime local = inZone(time, zone.getKey());
+                for (CronExpression expression : zone.getValue().keySet()) {
+                    evaluated++;
+                    if (expression.matches(local)) {
+                        matched++;
+                        for (Registration registration : zone.getValue().get(expression)) {
+                            if (!enqueue(batch, registration, runnable(registration, time), scheduled))
+                                skipped++;
+                            if (fired != null)
+                                fired.add(registration);
+                        }
+                    }
+                }
+            }
+        }
+        metrics.recordMatching(evaluated, matched, batch.size(), System.nanoTime() - start);
+        FlightRecorderEvents.endTick(event, time.toInstant().toEpochMilli(), evaluated, matched, batch.size(), skipped);
+        dispatch(batch, skipped);
+        fire(fired, time);
+    }
+
+    /**
+     * Runs the given registrations for a time they are known to match, without evaluating any expressions. Each
+     * registration counts as one evaluated and matched expression in the metrics.
+     */
+    void run(ZonedDateTime time, Collection<Registration> due) {
+        List<Runnable> batch = new ArrayList<>(due.size());
+        List<Registration> fired = fireListeners.isEmpty() ? null : new ArrayList<Registration>();
+        int skipped = 0;
+        long start = System.nanoTime(), scheduled = toNanoTime(time, start);
+        synchronized (registrations) {
+            for (Registration registration : due) {
+                if (!enqueue(batch, registration, runnable(registration, time), scheduled))
+                    skipped++;
+                if (fired != null)
+                    fired.add(registration);
+            }
+        }
+        metrics.recordMatching(due.size(), due.size(), batch.size(), System.nanoTime() - start);
+        dispatch(batch, skipped);
+        fire(fired, time);
+    }
+
+    /**
+     * Returns a copy of the registrations by zone, where the null zone stands for the zone of the time being run.
+     */
+    Map<ZoneId, Multimap<CronExpression, Registration>> getRegistrations() {
+        synchronized (registrations) {
+            Map<ZoneId, Multimap<CronExpression, Registration>> copy = new HashMap<>();
+            for (Map.Entry<ZoneId, Multimap<CronExpression, Registration>> zone : registrations.entrySet())
+                copy.put(zone.getKey(), ImmutableSetMultimap.copyOf(zone.getValue()));
+            return copy;
+        }
+    }
+
+    /**
+     * Applies each registration's {@link MisfirePolicy} to the times its expression matched after the first time and
+     * before the second one. Missed times are found by jumping from one match to the next rather than by checking
+     * every period in between, and everything that has to run is submitted together once they have all been found.
+     */
+    public void runMissed(ZonedDateTime after, ZonedDateTime before) {
+        List<Runnable> batch = new ArrayList<>();
+        List<Registration> fired = fireListeners.isEmpty() ? null : new ArrayList<Registration>();
+        int skipped = 0;
+        long scheduled = toNanoTime(before, System.nanoTime());
+        synchronized (registrations) {
+            for (Map.Entry<ZoneId, Multimap<CronExpression, Registration>> zone : registrations.entrySet()) {
+                ZonedDateTime localAfter = inZone(after, zone.getKey()), localBefore = inZone(before, zone.getKey());
+                for (CronExpression expression : zone.getValue().keySet()) {
+                    Collection<Registration> forExpression = zone.getValue().get(expression);
+                    int limit = 0;
+                    for (Registration registration : forExpression) {
+                        if (registration.getMisfirePolicy() == MisfirePolicy.FIRE_ALL)
+                            limit = Integer.MAX_VALUE;
+                        else if (registration.getMisfirePolicy() == MisfirePolicy.FIRE_ONCE)
+                            limit = Math.max(limit, 1);
+                    }
+                    // the time before is a tick of its own, so runs at it are not missed
+                    int missed = limit == 0 ? 0 : (int) Math.min(expression.count(localAfter, localBefore.minusNanos(1)),
+                            limit);
+                    if (missed > 0)
+                        for (Registration registration : forExpression)
+                            for (int i = timesToRun(registration, missed); i > 0; i--) {
+                                if (!enqueue(batch, registration, runnable(registration, before), scheduled))
+                                    skipped++;
+                                if (fired != null)
+                                    fired.add(registration);
+                            }
+                }
+            }
+        }
+        dispatch(batch, skipped);
+        fire(fired, before);
+    }
+
+    private static int timesToRun(Registration registration, int missed) {
+        switch (registration.getMisfirePolicy()) {
+            case FIRE_ALL:
+                return missed;
+            case FIRE_ONCE:
+                return 1;
+            default:
+                return 0;
+        }
+    }
+
+    /**
+     * Adds a run to the batch as the registration's {@link ConcurrencyPolicy} allows, returning false if the policy
+     * skips it. A queued run is started later by the run ahead of it, so it is not added.
+     */
+    private boolean enqueue(List<Runnable> batch, Registration registration, Runnable runnable, long scheduled) {
+        Runnable acquired = registration.acquire(metrics.timed(registration, runnable, scheduled));
+        if (acquired == null)
+            return false;
+        if (acquired == Registration.QUEUED)
+            metrics.recordQueued(1);
+        else
+            batch.add(acquired);
+        return true;
+    }
+
+    /**
+     * Returns when the given time was, or will be, on the {@link System#nanoTime()} clock, so that the lag of every
+     * run in a batch can be measured without reading the wall clock again.
+     */
+    private long toNanoTime(ZonedDateTime time, long nanoTime) {
+        long ago = clock.millis() - time.toInstant().toEpochMilli();
+        return nanoTime - TimeUnit.MILLISECONDS.toNanos(ago);
+    }
+
+    private Runnable runnable(Registration registration, ZonedDateTime time) {
+        ScheduleJournal journal = this.journal;
+        if (journal == null || registration.getId() == null)
+            return registration.getRunnable();
+        return new Journaled(journal, registration, time);
+    }
+
+    private void dispatch(List<Runnable> batch, int skipped) {
+        metrics.recordSkipped(skipped);
+        metrics.recordQueued(batch.size());
+        Object event = FlightRecorderEvents.beginDispatch();
+        dispatcher.executeAll(batch);
+        FlightRecorderEvents.endDispatch(event, batch.size());
+    }
+
+    private void fire(List<Registration> fired, ZonedDateTime time) {
+        if (fired == null || fired.isEmpty())
+            return;
+        Instant scheduled = time.toInstant(), actual = clock.instant();
+        for (Registration registration : fired) {
+            FireEvent event = new FireEvent(registration.getExpression(), registration.getId(), scheduled, actual);
+            for (FireListener listener : fireListeners)
+                listener.onFire(event);
+        }
+    }
+
+    private static ZonedDateTime inZone(ZonedDateTime time, ZoneId zone) {
+        return zone == null ? time : time.withZoneSameInstant(zone);
+    }
+
+    private ZonedDateTime atClockZone(long milliseconds) {
+        return ZonedDateTime.ofInstant(Instant.ofEpochMilli(milliseconds), clock.getZone());
     }
 
     public synchronized void stop() {
-        if (future != null) {
-            future.cancel(true);
-            future = null;
+        if (ticker != null) {
+            ticker.stop();
+            ticker = null;
+        }
+    }
+
+    /**
+     * Records in the journal that a registration's runnable has run to completion.
+     */
+    private static final class Journaled implements Runnable {
+        private final ScheduleJournal journal;
+        private final Registration registration;
+        private final long timeInMilliseconds;
+
+        private Journaled(ScheduleJournal journal, Registration registration, ZonedDateTime time) {
+            this.journal = journal;
+            this.registration = registration;
+            this.timeInMilliseconds = time.toInstant().toEpochMilli();
+        }
+
+        @Override
+        public void run() {
+            registration.getRunnable().run();
+            journal.fired(registration.getId(), timeInMilliseconds);
+        }
+    }
+
+    private static final class OneByOne implements BatchExecutor {
+        private final Executor executor;
+
+        private OneByOne(Executor executor) {
+            this.executor = executor;
+        }
+
+        @Override
+        public void execute(Runnable task) {
+            executor.execute(task);
+        }
+
+        @Override
+        public void executeAll(List<Runnable> tasks) {
+            for (Runnable task : tasks)
+                executor.execute(task);
         }
     }
 }
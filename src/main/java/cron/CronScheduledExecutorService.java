@@ -0,0 +1,180 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2013 Anders Wisch
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package cron;
+
+import com.google.common.base.Preconditions;
+import com.google.common.primitives.Longs;
+import com.google.common.util.concurrent.AbstractFuture;
+import com.google.common.util.concurrent.ForwardingExecutorService;
+
+import java.time.Clock;
+import java.time.ZonedDateTime;
+import java.util.concurrent.Callable;
+import java.util.concurrent.Delayed;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * A scheduled executor that can also run tasks at the times a cron expression matches. Rather than polling, each task
+ * is a single delayed task on the underlying executor, armed for its next fire time and armed again once it has run,
+ * so shutting down the executor or cancelling the returned future stops it like any other scheduled task. Fire times
+ * missed while a run was still going are skipped.
+ */
+public class CronScheduledExecutorService extends ForwardingExecutorService implements ScheduledExecutorService {
+    private final ScheduledExecutorService executor;
+    private final Clock clock;
+
+    protected CronScheduledExecutorService(ScheduledExecutorService executor, Clock clock) {
+        this.executor = Preconditions.checkNotNull(executor);
+        this.clock = Preconditions.checkNotNull(clock);
+    }
+
+    @Override
+    protected ScheduledExecutorService delegate() {
+        return executor;
+    }
+
+    public Clock getClock() {
+        return clock;
+    }
+
+    /**
+     * Runs the callable every time the expression matches. The returned future's delay is the time until the next
+     * fire. Like a future of a periodic task it only completes if the callable throws, the future is cancelled or the
+     * executor rejects the next run, with one exception: when the expression will never match again, it completes
+     * with the result of the last run, or null if there was none.
+     */
+    public <V> ScheduledFuture<V> schedule(CronExpression expression, Callable<V> callable) {
+        CronFuture<V> future = new CronFuture<>(expression, callable);
+        future.arm(ZonedDateTime.now(clock));
+        return future;
+    }
+
+    public ScheduledFuture<?> schedule(CronExpression expression, Runnable runnable) {
+        return schedule(expression, Executors.callable(runnable));
+    }
+
+    @Override
+    public ScheduledFuture<?> schedule(Runnable command, long delay, TimeUnit unit) {
+        return executor.schedule(command, delay, unit);
+    }
+
+    @Override
+    public <V> ScheduledFuture<V> schedule(Callable<V> callable, long delay, TimeUnit unit) {
+        return executor.schedule(callable, delay, unit);
+    }
+
+    @Override
+    public ScheduledFuture<?> scheduleAtFixedRate(Runnable command, long initialDelay, long period, TimeUnit unit) {
+        return executor.scheduleAtFixedRate(command, initialDelay, period, unit);
+    }
+
+    @Override
+    public ScheduledFuture<?> scheduleWithFixedDelay(Runnable command, long initialDelay, long delay, TimeUnit unit) {
+        return executor.scheduleWithFixedDelay(command, initialDelay, delay, unit);
+    }
+
+    private long currentTimeMillis() {
+        return clock.millis();
+    }
+
+    private final class CronFuture<V> extends AbstractFuture<V> implements ScheduledFuture<V>, Runnable {
+        private final CronExpression expression;
+        private final Callable<V> callable;
+        // only touched by the run that is in progress, or before the first one is armed
+        private ZonedDateTime next;
+        private V result;
+        private volatile long nextInMilliseconds;
+        private volatile ScheduledFuture<?> armed;
+
+        private CronFuture(CronExpression expression, Callable<V> callable) {
+            this.expression = Preconditions.checkNotNull(expression);
+            this.callable = Preconditions.checkNotNull(callable);
+        }
+
+        private void arm(ZonedDateTime after) {
+            next = expression.nextTimeAfter(after);
+            if (next == null) {
+                set(result);
+                return;
+            }
+            nextInMilliseconds = next.toInstant().toEpochMilli();
+            delay(nextInMilliseconds - currentTimeMillis());
+        }
+
+        private void delay(long milliseconds) {
+            try {
+                armed = executor.schedule(this, milliseconds, TimeUnit.MILLISECONDS);
+            } catch (RejectedExecutionException e) {
+                setException(e);
+                return;
+            }
+            // cancelled while arming
+            if (isCancelled())
+                armed.cancel(false);
+        }
+
+        @Override
+        public void run() {
+            if (isDone())
+                return;
+            long early = nextInMilliseconds - currentTimeMillis();
+            if (early > 0) {
+                // the executor's clock ran ahead of the wall clock
+                delay(early);
+                return;
+            }
+            try {
+                result = callable.call();
+            } catch (Throwable t) {
+                setException(t);
+                return;
+            }
+            ZonedDateTime now = ZonedDateTime.now(clock);
+            arm(now.isAfter(next) ? now : next);
+        }
+
+        @Override
+        public boolean cancel(boolean mayInterruptIfRunning) {
+            boolean cancelled = super.cancel(mayInterruptIfRunning);
+            ScheduledFuture<?> armed = this.armed;
+            if (cancelled && armed != null)
+                armed.cancel(mayInterruptIfRunning);
+            return cancelled;
+        }
+
+        @Override
+        public long getDelay(TimeUnit unit) {
+            return unit.convert(nextInMilliseconds - currentTimeMillis(), TimeUnit.MILLISECONDS);
+        }
+
+        @Override
+        public int compareTo(Delayed o) {
+            return Longs.compare(getDelay(TimeUnit.NANOSECONDS), o.getDelay(TimeUnit.NANOSECONDS));
+        }
+    }
+}
@@ -41,6 +41,13 @@ public class DayOfMonthField extends DefaultField {
         return unspecified;
     }
 
+    /**
+     * Returns whether this field matches exactly the days in its {@link #mask()}, with no {@code L} or {@code W}.
+     */
+    public boolean isPlain() {
+        return !lastDay && !nearestWeekday;
+    }
+
     public boolean matches(ZonedDateTime time) {
         if (unspecified)
             return true;
@@ -109,6 +116,14 @@ public class DayOfMonthField extends DefaultField {
             }
         }
 
+        /**
+         * Picks hashed days from 1 to 28 unless given a range, as Jenkins does, so that they occur in every month.
+         */
+        @Override
+        protected boolean parseHash(Tokens tokens, int first, int last) {
+            return super.parseHash(tokens, first, Math.min(last, 28));
+        }
+
         @Override
         protected boolean parseNumber(Tokens tokens, Token token, int first, int last) {
             if (token == Token.WEEKDAY) {
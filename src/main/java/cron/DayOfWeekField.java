@@ -51,6 +51,13 @@ public class DayOfWeekField extends DefaultField {
         return unspecified;
     }
 
+    /**
+     * Returns whether this field matches exactly the days in its {@link #mask()}, with no {@code L} or {@code #}.
+     */
+    public boolean isPlain() {
+        return !hasLast && !hasNth;
+    }
+
     public boolean matches(ZonedDateTime time) {
         if (unspecified)
             return true;
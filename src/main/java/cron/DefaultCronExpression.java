@@ -23,9 +23,37 @@
  */
 package cron;
 
+import java.time.Duration;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.Month;
+import java.time.ZoneOffset;
 import java.time.ZonedDateTime;
+import java.time.temporal.ChronoUnit;
+import java.time.zone.ZoneOffsetTransition;
+import java.time.zone.ZoneRules;
+import java.util.Arrays;
 
 public class DefaultCronExpression extends CronExpression {
+    /**
+     * The Gregorian calendar repeats every 400 years, so an expression that does not match within that many years of
+     * a given time never will.
+     */
+    private static final int SEARCH_HORIZON_IN_YEARS = 400;
+    private static final int SECONDS_PER_MINUTE = 60, SECONDS_PER_HOUR = 3600, SECONDS_PER_DAY = 86400,
+            SECONDS_PER_WEEK = 604800;
+    private static final long ALL_SECONDS = (1L << 60) - 1, ALL_MINUTES = (1L << 60) - 1, ALL_HOURS = (1L << 24) - 1,
+            ALL_DAYS_OF_WEEK = 0x7fL, ALL_DAYS_OF_MONTH = 0xfffffffeL, ALL_MONTHS = 0x1ffeL;
+    /**
+     * Cycles start on a Sunday at midnight, local time, three days after the epoch.
+     */
+    private static final long CYCLE_ORIGIN = 3 * SECONDS_PER_DAY;
+    /**
+     * Cycles with more fires than this are left to the calendar, to bound the memory each expression holds.
+     */
+    private static final int MAX_OFFSETS = 8192;
+
     private final String string;
     private final TimeField second,
             minute,
@@ -34,11 +62,22 @@ public class DefaultCronExpression extends CronExpression {
             year;
     private final DayOfWeekField dayOfWeek;
     private final DayOfMonthField dayOfMonth;
+    /**
+     * For an expression that repeats every {@code cycle} seconds of local time, the seconds into the cycle at which it
+     * fires, in order. Zero and null for an expression that depends on the calendar.
+     */
+    private final int cycle;
+    private final int[] offsets;
 
     protected DefaultCronExpression(String s, boolean seconds, boolean oneBasedDayOfWeek, boolean allowBothDayFields) {
+        this(s, seconds, oneBasedDayOfWeek, allowBothDayFields, null);
+    }
+
+    protected DefaultCronExpression(String s, boolean seconds, boolean oneBasedDayOfWeek, boolean allowBothDayFields,
+                                    String hashKey) {
         string = s;
         s = s.toUpperCase();
-        Tokens tokens = new Tokens(s);
+        Tokens tokens = new Tokens(s, hashKey);
         if (seconds)
             second = DefaultField.parse(tokens, 0, 59);
         else
@@ -48,12 +87,65 @@ public class DefaultCronExpression extends CronExpression {
         dayOfMonth = DayOfMonthField.parse(tokens);
         month = MonthField.parse(tokens);
         dayOfWeek = DayOfWeekField.parse(tokens, oneBasedDayOfWeek);
-        if (tokens.hasNext())
-            year = DefaultField.parse(tokens, 0, 0);
-        else
-            year = MatchAllField.instance;
+        YearField years = tokens.hasNext() ? YearField.parse(tokens) : null;
+        year = years == null || years.isFullRange() ? MatchAllField.instance : years;
         if (!allowBothDayFields && !dayOfMonth.isUnspecified() && !dayOfWeek.isUnspecified())
             throw new IllegalArgumentException("Day of month and day of week may not both be specified");
+        cycle = cycle();
+        offsets = cycle == 0 ? null : offsets();
+    }
+
+    /**
+     * Returns the length of the cycle this expression repeats in, or 0 if it depends on the calendar: when it has a
+     * year, restricts the month or the day of the month, or uses {@code L}, {@code W} or {@code #}.
+     */
+    private int cycle() {
+        if (!hasPlainDays() || (mask(month) & ALL_MONTHS) != ALL_MONTHS
+                || (dayOfMonthMask() & ALL_DAYS_OF_MONTH) != ALL_DAYS_OF_MONTH)
+            return 0;
+        long days = dayOfWeekMask() & ALL_DAYS_OF_WEEK, hours = mask(hour) & ALL_HOURS;
+        long minutes = mask(minute) & ALL_MINUTES;
+        long seconds = second == MatchAllField.instance ? 1L : mask(second) & ALL_SECONDS;
+        if (days == 0 || hours == 0 || minutes == 0 || seconds == 0)
+            return 0;
+        int cycle = days != ALL_DAYS_OF_WEEK ? SECONDS_PER_WEEK
+                : hours != ALL_HOURS ? SECONDS_PER_DAY
+                : minutes != ALL_MINUTES ? SECONDS_PER_HOUR
+                : SECONDS_PER_MINUTE;
+        long fires = Long.bitCount(seconds);
+        if (cycle >= SECONDS_PER_HOUR)
+            fires *= Long.bitCount(minutes);
+        if (cycle >= SECONDS_PER_DAY)
+            fires *= Long.bitCount(hours);
+        if (cycle == SECONDS_PER_WEEK)
+            fires *= Long.bitCount(days);
+        return fires <= MAX_OFFSETS ? cycle : 0;
+    }
+
+    private int[] offsets() {
+        long days = cycle == SECONDS_PER_WEEK ? dayOfWeekMask() & ALL_DAYS_OF_WEEK : 1L;
+        long hours = cycle >= SECONDS_PER_DAY ? mask(hour) & ALL_HOURS : 1L;
+        long minutes = cycle >= SECONDS_PER_HOUR ? mask(minute) & ALL_MINUTES : 1L;
+        long seconds = second == MatchAllField.instance ? 1L : mask(second) & ALL_SECONDS;
+        int[] offsets = new int[Long.bitCount(days) * Long.bitCount(hours) * Long.bitCount(minutes)
+                * Long.bitCount(seconds)];
+        int i = 0;
+        for (long d = days; d != 0; d &= d - 1)
+            for (long h = hours; h != 0; h &= h - 1)
+                for (long m = minutes; m != 0; m &= m - 1)
+                    for (long s = seconds; s != 0; s &= s - 1)
+                        offsets[i++] = Long.numberOfTrailingZeros(d) * SECONDS_PER_DAY
+                                + Long.numberOfTrailingZeros(h) * SECONDS_PER_HOUR
+                                + Long.numberOfTrailingZeros(m) * SECONDS_PER_MINUTE
+                                + Long.numberOfTrailingZeros(s);
+        return offsets;
+    }
+
+    /**
+     * Returns how often this expression repeats in local time, or null if it depends on the calendar.
+     */
+    public Duration getPeriod() {
+        return cycle == 0 ? null : Duration.ofSeconds(cycle);
     }
 
     @Override
@@ -72,6 +164,247 @@ public class DefaultCronExpression extends CronExpression {
                 && dayOfMonth.matches(t);
     }
 
+    /**
+     * Checks the fields for values that can never occur together, such as the 30th of February. Days with {@code L},
+     * {@code W} or {@code #} are looked for in a 28 year cycle of the calendar, over which every date falls on every
+     * day of the week.
+     */
+    @Override
+    public boolean isSatisfiable() {
+        if (years() != null)
+            return lastPossibleFire() != null;
+        if ((mask(second) & ALL_SECONDS) == 0 || (mask(minute) & ALL_MINUTES) == 0 || (mask(hour) & ALL_HOURS) == 0)
+            return false;
+        if (dayOfMonth.isPlain() && dayOfWeek.isPlain()) {
+            if ((dayOfWeekMask() & ALL_DAYS_OF_WEEK) == 0)
+                return false;
+            long days = dayOfMonthMask() & ALL_DAYS_OF_MONTH;
+            for (Month m : Month.values())
+                if (month.contains(m.getValue()) && days != 0 && Long.numberOfTrailingZeros(days) <= m.maxLength())
+                    return true;
+            return false;
+        }
+        for (LocalDate day = LocalDate.of(2001, 1, 1); day.getYear() < 2029; day = day.plusDays(1))
+            if (matchesDay(day))
+                return true;
+        return false;
+    }
+
+    /**
+     * Returns the last time of the last day in the year field that the other fields allow, or null if there is no
+     * year field.
+     */
+    @Override
+    public LocalDateTime lastPossibleFire() {
+        YearField years = years();
+        long hours = mask(hour) & ALL_HOURS, minutes = mask(minute) & ALL_MINUTES;
+        long seconds = second == MatchAllField.instance ? 1L : mask(second) & ALL_SECONDS;
+        if (years == null || hours == 0 || minutes == 0 || seconds == 0)
+            return null;
+        for (int year = years.previous(YearField.MAX); year != -1; year = years.previous(year - 1)) {
+            for (LocalDate day = LocalDate.of(year, 12, 31); day.getYear() == year; day = day.minusDays(1))
+                if (matchesDay(day))
+                    return day.atTime(63 - Long.numberOfLeadingZeros(hours), 63 - Long.numberOfLeadingZeros(minutes),
+                            63 - Long.numberOfLeadingZeros(seconds));
+        }
+        return null;
+    }
+
+    /**
+     * Returns the years this expression is limited to, or null if it is not.
+     */
+    private YearField years() {
+        return year instanceof YearField ? (YearField) year : null;
+    }
+
+    private boolean matchesDay(LocalDate day) {
+        ZonedDateTime t = day.atStartOfDay(ZoneOffset.UTC);
+        return year.contains(day.getYear())
+                && month.contains(day.getMonthValue())
+                && dayOfWeek.matches(t)
+                && dayOfMonth.matches(t);
+    }
+
+    /**
+     * For an expression with a period, finds the next fire in the precomputed offsets of its cycle. Between two offset
+     * transitions local time is a fixed distance from the epoch, so the only calendar work is looking up the zone's
+     * next transition.
+     */
+    @Override
+    public ZonedDateTime nextTimeAfter(ZonedDateTime after) {
+        if (offsets != null) {
+            ZoneRules rules = after.getZone().getRules();
+            long bound = after.toEpochSecond();
+            ZoneOffset offset = after.getOffset();
+            ZoneOffsetTransition transition = rules.nextTransition(Instant.ofEpochSecond(bound));
+            for (;;) {
+                long next = nextLocal(bound + offset.getTotalSeconds()) - offset.getTotalSeconds();
+                if (transition == null || next < transition.toEpochSecond())
+                    return ZonedDateTime.ofInstant(Instant.ofEpochSecond(next), after.getZone());
+                bound = transition.toEpochSecond() - 1;
+                offset = transition.getOffsetAfter();
+                transition = rules.nextTransition(transition.getInstant());
+            }
+        }
+        ZonedDateTime t = second == MatchAllField.instance
+                ? after.truncatedTo(ChronoUnit.MINUTES).plusMinutes(1)
+                : after.truncatedTo(ChronoUnit.SECONDS).plusSeconds(1);
+        int lastYear = after.getYear() + SEARCH_HORIZON_IN_YEARS;
+        while (t.getYear() <= lastYear) {
+            if (!year.contains(t.getYear())) {
+                int next = ((YearField) year).next(t.getYear());
+                if (next == -1)
+                    return null;
+                t = t.withDayOfYear(1).truncatedTo(ChronoUnit.DAYS).withYear(next);
+            }
+            else if (!month.contains(t.getMonthValue()))
+                t = t.withDayOfMonth(1).truncatedTo(ChronoUnit.DAYS).plusMonths(1);
+            else if (!dayOfWeek.matches(t) || !dayOfMonth.matches(t))
+                t = t.truncatedTo(ChronoUnit.DAYS).plusDays(1);
+            else if (!hour.contains(t.getHour()))
+                t = t.truncatedTo(ChronoUnit.HOURS).plusHours(1);
+            else if (!minute.contains(t.getMinute()))
+                t = t.truncatedTo(ChronoUnit.MINUTES).plusMinutes(1);
+            else if (!second.contains(t.getSecond()))
+                t = t.truncatedTo(ChronoUnit.SECONDS).plusSeconds(1);
+            else
+                return t;
+        }
+        return null;
+    }
+
+    /**
+     * For an expression with a period, counts whole cycles and the offsets either side of them, between each pair of
+     * offset transitions.
+     */
+    @Override
+    public long count(ZonedDateTime from, ZonedDateTime to) {
+        if (offsets == null)
+            return super.count(from, to);
+        ZoneRules rules = from.getZone().getRules();
+        long bound = from.toEpochSecond(), end = to.toEpochSecond(), count = 0;
+        ZoneOffset offset = from.getOffset();
+        ZoneOffsetTransition transition = rules.nextTransition(Instant.ofEpochSecond(bound));
+        while (bound < end) {
+            long last = transition == null ? end : Math.min(end, transition.toEpochSecond() - 1);
+            count += countLocal(last + offset.getTotalSeconds()) - countLocal(bound + offset.getTotalSeconds());
+            bound = last;
+            if (transition != null && last < end) {
+                offset = transition.getOffsetAfter();
+                transition = rules.nextTransition(transition.getInstant());
+            }
+        }
+        return count;
+    }
+
+    /**
+     * Returns the first local time after the given one, in seconds from the epoch, at which this expression fires.
+     */
+    private long nextLocal(long local) {
+        long position = Math.floorMod(local - CYCLE_ORIGIN, (long) cycle);
+        int i = Arrays.binarySearch(offsets, (int) position);
+        i = i >= 0 ? i + 1 : -i - 1;
+        long start = local - position;
+        return i < offsets.length ? start + offsets[i] : start + cycle + offsets[0];
+    }
+
+    /**
+     * Returns how many times this expression fires from the origin of the cycles up to the given local time.
+     */
+    private long countLocal(long local) {
+        long cycles = Math.floorDiv(local - CYCLE_ORIGIN, (long) cycle);
+        int i = Arrays.binarySearch(offsets, (int) (local - CYCLE_ORIGIN - cycles * cycle));
+        i = i >= 0 ? i + 1 : -i - 1;
+        return cycles * offsets.length + i;
+    }
+
+    /**
+     * Plain fields are a bit test each, while {@code L}, {@code W} and {@code #} have to look at the calendar.
+     */
+    @Override
+    int cost() {
+        return 1 + (dayOfMonth.isPlain() ? 0 : 2) + (dayOfWeek.isPlain() ? 0 : 2);
+    }
+
+    @Override
+    ChronoUnit resolution() {
+        return second == MatchAllField.instance ? ChronoUnit.MINUTES : ChronoUnit.SECONDS;
+    }
+
+    /**
+     * Intersects field by field when neither expression uses a year or {@code L}, {@code W} or {@code #}, since every
+     * field has to match for an expression to match.
+     */
+    @Override
+    public CronExpression intersect(CronExpression other) {
+        if (!(other instanceof DefaultCronExpression))
+            return super.intersect(other);
+        DefaultCronExpression that = (DefaultCronExpression) other;
+        if (!hasPlainDays() || !that.hasPlainDays())
+            return super.intersect(other);
+        boolean seconds = second != MatchAllField.instance || that.second != MatchAllField.instance;
+        long[] masks = {
+                mask(second) & mask(that.second),
+                mask(minute) & mask(that.minute),
+                mask(hour) & mask(that.hour),
+                dayOfMonthMask() & that.dayOfMonthMask(),
+                mask(month) & mask(that.month),
+                dayOfWeekMask() & that.dayOfWeekMask()
+        };
+        int[][] ranges = {{0, 59}, {0, 59}, {0, 23}, {1, 31}, {1, 12}, {0, 6}};
+        StringBuilder intersection = new StringBuilder();
+        for (int field = seconds ? 0 : 1; field < masks.length; field++) {
+            if (masks[field] == 0)
+                return NeverCronExpression.instance;
+            if (intersection.length() > 0)
+                intersection.append(' ');
+            append(intersection, masks[field], ranges[field][0], ranges[field][1]);
+        }
+        return new DefaultCronExpression(intersection.toString(), seconds, false, true);
+    }
+
+    /**
+     * Returns whether the days this expression fires on are given by the masks of its day and month fields alone,
+     * without a year or {@code L}, {@code W} or {@code #}.
+     */
+    boolean hasPlainDays() {
+        return year == MatchAllField.instance && dayOfMonth.isPlain() && dayOfWeek.isPlain();
+    }
+
+    /**
+     * Returns the masks of the second, minute, hour, day of month, month and day of week fields, with every bit set
+     * for a field that matches everything.
+     */
+    long[] masks() {
+        return new long[]{mask(second), mask(minute), mask(hour), dayOfMonthMask(), mask(month), dayOfWeekMask()};
+    }
+
+    private long dayOfMonthMask() {
+        return dayOfMonth.isUnspecified() ? -1L : dayOfMonth.mask();
+    }
+
+    private long dayOfWeekMask() {
+        return dayOfWeek.isUnspecified() ? -1L : dayOfWeek.mask() & 0x7f;
+    }
+
+    private static long mask(TimeField field) {
+        return field instanceof DefaultField ? ((DefaultField) field).mask() : -1L;
+    }
+
+    private static void append(StringBuilder s, long mask, int min, int max) {
+        long all = (-1L >>> (63 - max)) & (-1L << min);
+        if ((mask & all) == all) {
+            s.append('*');
+            return;
+        }
+        int length = s.length();
+        for (long bits = mask & all; bits != 0; bits &= bits - 1) {
+            if (s.length() > length)
+                s.append(',');
+            s.append(Long.numberOfTrailingZeros(bits));
+        }
+    }
+
     @Override
     public boolean equals(Object o) {
         if (this == o) return true;
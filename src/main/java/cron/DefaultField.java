@@ -30,10 +30,16 @@ import java.util.NavigableSet;
 public class DefaultField implements TimeField {
     private final boolean fullRange;
     protected final NavigableSet<Integer> numbers;
+    private final long mask;
 
     protected DefaultField(Builder b) {
         fullRange = b.fullRange;
         numbers = fullRange ? null : b.numbers.build();
+        long mask = 0;
+        for (int i = b.min; i <= b.max && i < 64; i++)
+            if (contains(i))
+                mask |= 1L << i;
+        this.mask = mask;
     }
 
     public static DefaultField parse(Tokens s, int min, int max) {
@@ -45,6 +51,13 @@ public class DefaultField implements TimeField {
         return fullRange || numbers.contains(number);
     }
 
+    /**
+     * Returns the values of this field within its range as bits, where the lowest bit stands for zero.
+     */
+    public long mask() {
+        return mask;
+    }
+
     @Override
     public boolean equals(Object o) {
         if (this == o) return true;
@@ -86,6 +99,8 @@ public class DefaultField implements TimeField {
                 if (parseNumber(tokens, tokens.next(), tokens.number(), last)) {
                     return true;
                 }
+            } else if (token == Token.HASH) {
+                return parseHash(tokens, first, last);
             } else if (token == Token.MATCH_ALL) {
                 token = tokens.next();
                 if (token == Token.SKIP) {
@@ -126,6 +141,44 @@ public class DefaultField implements TimeField {
             return false;
         }
 
+        /**
+         * Parses {@code H}, {@code H(first-last)} and either of those followed by a skip, each of which picks values
+         * by hashing the key the expression was parsed with. Returns true if the end of this field has been reached.
+         */
+        protected boolean parseHash(Tokens tokens, int first, int last) {
+            int hash = tokens.hash();
+            Token token = tokens.next();
+            if (token == Token.OPEN_PARENTHESIS) {
+                first = nextNumber(tokens);
+                expect(tokens, Token.RANGE);
+                last = nextNumber(tokens);
+                expect(tokens, Token.CLOSE_PARENTHESIS);
+                token = tokens.next();
+            }
+            if (last < first)
+                throw new IllegalArgumentException("Backwards range for 'H': " + first + "-" + last);
+            if (token == Token.SKIP) {
+                int skip = nextNumber(tokens);
+                if (skip == 0)
+                    throw new IllegalArgumentException("Zero step for 'H'");
+                for (int i = first + hash % skip; i <= last; i += skip)
+                    add(i);
+                token = tokens.next();
+            } else {
+                add(first + hash % (last - first + 1));
+            }
+            if (endOfField(token))
+                return true;
+            if (token != Token.VALUE_SEPARATOR)
+                throw new IllegalStateException("Expected ',' or end of field after 'H'");
+            return false;
+        }
+
+        private void expect(Tokens tokens, Token expected) {
+            if (tokens.next() != expected)
+                throw new IllegalStateException("Expected " + expected);
+        }
+
         protected int nextNumber(Tokens tokens) {
             if (tokens.next() == Token.NUMBER)
                 return tokens.number();
@@ -0,0 +1,181 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2013 Anders Wisch
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package cron;
+
+import com.google.common.base.Charsets;
+import com.google.common.base.Preconditions;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.channels.FileChannel;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.time.Clock;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * A lease store kept in a directory, one file per lease, for nodes that run on the same machine or share a file
+ * system that supports locking. Every operation holds an exclusive lock on a lock file in the directory, so it is
+ * atomic across processes as well as across threads.
+ */
+public class FileLeaseStore implements LeaseStore {
+    private static final String LOCK_FILE = ".lock", LEASE_SUFFIX = ".lease";
+    private static final ConcurrentMap<Path, Object> MONITORS = new ConcurrentHashMap<>();
+
+    private final Path directory, lockFile;
+    private final Object monitor;
+    private final Clock clock;
+
+    public FileLeaseStore(Path directory) {
+        this(directory, Clock.systemUTC());
+    }
+
+    public FileLeaseStore(Path directory, Clock clock) {
+        this.clock = Preconditions.checkNotNull(clock);
+        try {
+            this.directory = Files.createDirectories(directory).toRealPath();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        lockFile = this.directory.resolve(LOCK_FILE);
+        // file locks are held by the whole process, so threads of one process also need to exclude each other
+        Object monitor = new Object();
+        Object existing = MONITORS.putIfAbsent(this.directory, monitor);
+        this.monitor = existing != null ? existing : monitor;
+    }
+
+    @Override
+    public boolean tryAcquire(final String name, final String owner, final long durationInMilliseconds) {
+        checkName(name);
+        return withLock(new Locked<Boolean>() {
+            @Override
+            public Boolean run() throws IOException {
+                long now = clock.millis();
+                Lease lease = read(file(name));
+                if (lease != null && lease.expiresAt > now && !lease.owner.equals(owner))
+                    return false;
+                write(file(name), new Lease(owner, now + durationInMilliseconds));
+                return true;
+            }
+        });
+    }
+
+    @Override
+    public void release(final String name, final String owner) {
+        checkName(name);
+        withLock(new Locked<Void>() {
+            @Override
+            public Void run() throws IOException {
+                Lease lease = read(file(name));
+                if (lease != null && lease.owner.equals(owner))
+                    Files.deleteIfExists(file(name));
+                return null;
+            }
+        });
+    }
+
+    @Override
+    public Map<String, String> owners(final String prefix) {
+        return withLock(new Locked<Map<String, String>>() {
+            @Override
+            public Map<String, String> run() throws IOException {
+                long now = clock.millis();
+                Map<String, String> owners = new HashMap<>();
+                try (DirectoryStream<Path> files = Files.newDirectoryStream(directory, prefix + "*" + LEASE_SUFFIX)) {
+                    for (Path file : files) {
+                        Lease lease = read(file);
+                        if (lease != null && lease.expiresAt > now) {
+                            String fileName = file.getFileName().toString();
+                            owners.put(fileName.substring(0, fileName.length() - LEASE_SUFFIX.length()), lease.owner);
+                        }
+                    }
+                }
+                return owners;
+            }
+        });
+    }
+
+    /**
+     * Runs the operation while holding both this process's monitor for the directory and the lock on its lock file.
+     */
+    private <T> T withLock(Locked<T> operation) {
+        synchronized (monitor) {
+            try (FileChannel channel = FileChannel.open(lockFile, StandardOpenOption.CREATE, StandardOpenOption.WRITE)) {
+                // released when the channel is closed
+                channel.lock();
+                return operation.run();
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+    }
+
+    private Path file(String name) {
+        return directory.resolve(name + LEASE_SUFFIX);
+    }
+
+    private static void checkName(String name) {
+        Preconditions.checkArgument(name.matches("[A-Za-z0-9_.-]+"), "Bad lease name: %s", name);
+    }
+
+    private static Lease read(Path file) throws IOException {
+        List<String> lines;
+        try {
+            lines = Files.readAllLines(file, Charsets.UTF_8);
+        } catch (NoSuchFileException e) {
+            return null;
+        }
+        if (lines.size() < 2)
+            return null;
+        return new Lease(lines.get(0), Long.parseLong(lines.get(1)));
+    }
+
+    private static void write(Path file, Lease lease) throws IOException {
+        Path temporary = file.resolveSibling(file.getFileName() + ".tmp");
+        Files.write(temporary, (lease.owner + "\n" + lease.expiresAt + "\n").getBytes(Charsets.UTF_8));
+        Files.move(temporary, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    private interface Locked<T> {
+        T run() throws IOException;
+    }
+
+    private static final class Lease {
+        private final String owner;
+        private final long expiresAt;
+
+        private Lease(String owner, long expiresAt) {
+            this.owner = owner;
+            this.expiresAt = expiresAt;
+        }
+    }
+}
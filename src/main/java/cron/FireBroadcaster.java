@@ -0,0 +1,331 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2013 Anders Wisch
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package cron;
+
+import com.google.common.base.Preconditions;
+import com.google.common.util.concurrent.MoreExecutors;
+
+import java.util.ArrayDeque;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Hands the fire events of a schedule to subscribers, each with a bounded buffer and its own demand. This is the part
+ * of {@link FirePublisher} that does not depend on the Java version, including its builder, so that the Java 21
+ * version of the class only adds {@code java.util.concurrent.Flow}.
+ */
+public abstract class FireBroadcaster implements FireListener {
+    static final int DEFAULT_BUFFER_SIZE = 256;
+
+    private final CronSchedule schedule;
+    private final boolean ownsSchedule;
+    private final OverflowStrategy overflowStrategy;
+    private final int bufferSize;
+    private final Executor executor;
+    private final List<Subscription> subscriptions;
+    private final LongAdder dropped;
+    private volatile boolean closed;
+
+    FireBroadcaster(Builder b) {
+        Preconditions.checkArgument(b.bufferSize > 0, "Buffer size must be positive: %s", b.bufferSize);
+        schedule = Preconditions.checkNotNull(b.schedule);
+        ownsSchedule = b.expression != null;
+        overflowStrategy = b.overflowStrategy;
+        bufferSize = b.bufferSize;
+        executor = b.executor;
+        subscriptions = new CopyOnWriteArrayList<>();
+        dropped = new LongAdder();
+        schedule.addFireListener(this);
+    }
+
+    /**
+     * Publishes the fires of all of the schedule's registrations.
+     */
+    public static Builder builder(CronSchedule schedule) {
+        return new Builder(Preconditions.checkNotNull(schedule), null, null);
+    }
+
+    /**
+     * Publishes the fires of a single expression, ticking on the given executor until the publisher is closed.
+     */
+    public static Builder builder(CronExpression expression, ScheduledExecutorService executor) {
+        return new Builder(null, Preconditions.checkNotNull(expression), Preconditions.checkNotNull(executor));
+    }
+
+    public OverflowStrategy getOverflowStrategy() {
+        return overflowStrategy;
+    }
+
+    public int getBufferSize() {
+        return bufferSize;
+    }
+
+    /**
+     * Returns how many events have been dropped, or discarded along with a failed subscription, because subscribers
+     * did not keep up.
+     */
+    public long getDropped() {
+        return dropped.sum();
+    }
+
+    public int getSubscriberCount() {
+        return subscriptions.size();
+    }
+
+    public void subscribe(FireSubscriber subscriber) {
+        Preconditions.checkNotNull(subscriber);
+        Subscription subscription = new Subscription(subscriber);
+        subscriber.onSubscribe(subscription);
+        if (closed) {
+            subscription.complete();
+        } else {
+            subscriptions.add(subscription);
+            // closed while subscribing
+            if (closed && subscriptions.remove(subscription))
+                subscription.complete();
+        }
+    }
+
+    @Override
+    public void onFire(FireEvent event) {
+        for (Subscription subscription : subscriptions)
+            subscription.offer(event);
+    }
+
+    /**
+     * Stops publishing, stopping the schedule too if it was created for this publisher. Subscribers are completed once
+     * they have requested the events that are still buffered.
+     */
+    public void close() {
+        closed = true;
+        schedule.removeFireListener(this);
+        if (ownsSchedule)
+            schedule.stop();
+        for (Subscription subscription : subscriptions)
+            if (subscriptions.remove(subscription))
+                subscription.complete();
+    }
+
+    public static class Builder {
+        private static final Runnable NOTHING = new Runnable() {
+            @Override
+            public void run() {
+            }
+        };
+
+        private final CronExpression expression;
+        private final ScheduledExecutorService ticks;
+        private CronSchedule schedule;
+        private OverflowStrategy overflowStrategy;
+        private int bufferSize;
+        private Executor executor;
+        private boolean seconds;
+        private String id;
+
+        private Builder(CronSchedule schedule, CronExpression expression, ScheduledExecutorService ticks) {
+            this.schedule = schedule;
+            this.expression = expression;
+            this.ticks = ticks;
+            overflowStrategy = OverflowStrategy.DROP;
+            bufferSize = DEFAULT_BUFFER_SIZE;
+            executor = MoreExecutors.directExecutor();
+        }
+
+        public Builder withOverflowStrategy(OverflowStrategy overflowStrategy) {
+            this.overflowStrategy = Preconditions.checkNotNull(overflowStrategy);
+            return this;
+        }
+
+        public Builder withBufferSize(int bufferSize) {
+            this.bufferSize = bufferSize;
+            return this;
+        }
+
+        /**
+         * Sets the executor that delivers events to subscribers. By default they are delivered on the thread that
+         * fired them or requested them.
+         */
+        public Builder withExecutor(Executor executor) {
+            this.executor = Preconditions.checkNotNull(executor);
+            return this;
+        }
+
+        /**
+         * Ticks every second rather than every minute, for a single expression that has a seconds field.
+         */
+        public Builder withSecondsField(boolean seconds) {
+            this.seconds = seconds;
+            return this;
+        }
+
+        /**
+         * Sets the id that events for a single expression carry.
+         */
+        public Builder withId(String id) {
+            this.id = id;
+            return this;
+        }
+
+        public FirePublisher build() {
+            if (expression == null)
+                return new FirePublisher(this);
+            schedule = new CronSchedule(ticks, seconds);
+            schedule.add(Registration.builder(expression, NOTHING).withId(id).build());
+            FirePublisher publisher = new FirePublisher(this);
+            schedule.start();
+            return publisher;
+        }
+    }
+
+    private final class Subscription implements FireSubscription, Runnable {
+        private final FireSubscriber subscriber;
+        private final ArrayDeque<FireEvent> buffer;
+        private final AtomicLong requested;
+        // signals waiting to be handled by the drain loop, which only ever runs on one thread at a time
+        private final AtomicInteger work;
+        private volatile boolean cancelled;
+        private boolean completed;
+        private Throwable error;
+
+        private Subscription(FireSubscriber subscriber) {
+            this.subscriber = subscriber;
+            buffer = new ArrayDeque<>();
+            requested = new AtomicLong();
+            work = new AtomicInteger();
+        }
+
+        @Override
+        public void request(long n) {
+            if (n <= 0) {
+                fail(new IllegalArgumentException("Requested a non-positive number of events: " + n));
+                return;
+            }
+            for (;;) {
+                long current = requested.get(), next = current + n;
+                if (requested.compareAndSet(current, next < 0 ? Long.MAX_VALUE : next))
+                    break;
+            }
+            drain();
+        }
+
+        @Override
+        public void cancel() {
+            cancelled = true;
+            subscriptions.remove(this);
+        }
+
+        private void offer(FireEvent event) {
+            synchronized (this) {
+                if (completed || error != null)
+                    return;
+                if (buffer.size() >= bufferSize) {
+                    dropped.increment();
+                    switch (overflowStrategy) {
+                        case DROP:
+                            return;
+                        case LATEST:
+                            buffer.poll();
+                            break;
+                        case ERROR:
+                            dropped.add(buffer.size());
+                            buffer.clear();
+                            error = new IllegalStateException("Subscriber fell more than " + bufferSize + " events behind");
+                            subscriptions.remove(this);
+                    }
+                }
+                if (error == null)
+                    buffer.add(event);
+            }
+            drain();
+        }
+
+        private void complete() {
+            synchronized (this) {
+                completed = true;
+            }
+            drain();
+        }
+
+        private void fail(Throwable throwable) {
+            synchronized (this) {
+                buffer.clear();
+                error = throwable;
+            }
+            subscriptions.remove(this);
+            drain();
+        }
+
+        private void drain() {
+            if (work.getAndIncrement() == 0)
+                executor.execute(this);
+        }
+
+        @Override
+        public void run() {
+            int missed = 1;
+            do {
+                for (;;) {
+                    if (cancelled)
+                        break;
+                    FireEvent event = null;
+                    boolean terminate = false;
+                    Throwable throwable;
+                    synchronized (this) {
+                        throwable = error;
+                        if (throwable == null && requested.get() > 0)
+                            event = buffer.poll();
+                        if (throwable != null || event == null && completed && buffer.isEmpty())
+                            terminate = true;
+                    }
+                    if (terminate) {
+                        cancelled = true;
+                        if (throwable != null)
+                            subscriber.onError(throwable);
+                        else
+                            subscriber.onComplete();
+                        break;
+                    }
+                    if (event == null)
+                        break;
+                    if (requested.get() != Long.MAX_VALUE)
+                        requested.decrementAndGet();
+                    try {
+                        subscriber.onNext(event);
+                    } catch (RuntimeException | Error e) {
+                        // a subscriber that throws is treated as having cancelled
+                        cancel();
+                        Thread thread = Thread.currentThread();
+                        thread.getUncaughtExceptionHandler().uncaughtException(thread, e);
+                    }
+                }
+                missed = work.addAndGet(-missed);
+            } while (missed != 0);
+        }
+    }
+}
@@ -0,0 +1,70 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2013 Anders Wisch
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package cron;
+
+import java.time.Instant;
+
+/**
+ * One time a registration's expression matched: when it was scheduled to fire and when the schedule actually got to
+ * it.
+ */
+public final class FireEvent {
+    private final CronExpression expression;
+    private final String id;
+    private final Instant scheduledTime, actualTime;
+
+    FireEvent(CronExpression expression, String id, Instant scheduledTime, Instant actualTime) {
+        this.expression = expression;
+        this.id = id;
+        this.scheduledTime = scheduledTime;
+        this.actualTime = actualTime;
+    }
+
+    public CronExpression getExpression() {
+        return expression;
+    }
+
+    /**
+     * Returns the id of the registration that fired, or null if it has none.
+     */
+    public String getId() {
+        return id;
+    }
+
+    public Instant getScheduledTime() {
+        return scheduledTime;
+    }
+
+    public Instant getActualTime() {
+        return actualTime;
+    }
+
+    @Override
+    public String toString() {
+        return "FireEvent{expression=" + expression
+                + ", id=" + id
+                + ", scheduledTime=" + scheduledTime
+                + ", actualTime=" + actualTime + '}';
+    }
+}
@@ -0,0 +1,187 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2013 Anders Wisch
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package cron;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.EventType;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+import jdk.jfr.Timespan;
+import jdk.jfr.Timestamp;
+
+/**
+ * Emits Java Flight Recorder events for ticks, dispatches and runs, so that stalls in a schedule can be lined up with
+ * garbage collections and safepoints in the same recording. Each method first checks whether its event is enabled,
+ * and returns null or does nothing if it is not, so the events cost a field read when nothing is recording. On JVMs
+ * without JFR the events are never loaded.
+ */
+final class FlightRecorderEvents {
+    private static final boolean AVAILABLE = isAvailable();
+
+    private FlightRecorderEvents() {
+    }
+
+    private static boolean isAvailable() {
+        try {
+            Class.forName("jdk.jfr.Event");
+            return true;
+        } catch (ClassNotFoundException | LinkageError e) {
+            return false;
+        }
+    }
+
+    static Object beginTick() {
+        return AVAILABLE ? Events.begin(Events.TICK) : null;
+    }
+
+    static void endTick(Object event, long timeInMilliseconds, int evaluated, int matched, int dispatched, int skipped) {
+        if (event != null)
+            Events.endTick(event, timeInMilliseconds, evaluated, matched, dispatched, skipped);
+    }
+
+    static Object beginDispatch() {
+        return AVAILABLE ? Events.begin(Events.DISPATCH) : null;
+    }
+
+    static void endDispatch(Object event, int runs) {
+        if (event != null)
+            Events.endDispatch(event, runs);
+    }
+
+    static Object beginRun() {
+        return AVAILABLE ? Events.begin(Events.RUN) : null;
+    }
+
+    static void endRun(Object event, Registration registration, long lagInNanoseconds) {
+        if (event != null)
+            Events.endRun(event, registration, lagInNanoseconds);
+    }
+
+    /**
+     * Holds everything that refers to JFR, so that it is only loaded once JFR is known to be there.
+     */
+    private static final class Events {
+        private static final int TICK = 0, DISPATCH = 1, RUN = 2;
+        private static final EventType[] TYPES = {
+                EventType.getEventType(TickEvent.class),
+                EventType.getEventType(DispatchEvent.class),
+                EventType.getEventType(RunEvent.class)
+        };
+
+        private static Object begin(int type) {
+            if (!TYPES[type].isEnabled())
+                return null;
+            Event event = type == TICK ? new TickEvent() : type == DISPATCH ? new DispatchEvent() : new RunEvent();
+            event.begin();
+            return event;
+        }
+
+        private static void endTick(Object o, long timeInMilliseconds, int evaluated, int matched, int dispatched,
+                                    int skipped) {
+            TickEvent event = (TickEvent) o;
+            event.end();
+            if (event.shouldCommit()) {
+                event.time = timeInMilliseconds;
+                event.evaluated = evaluated;
+                event.matched = matched;
+                event.dispatched = dispatched;
+                event.skipped = skipped;
+                event.commit();
+            }
+        }
+
+        private static void endDispatch(Object o, int runs) {
+            DispatchEvent event = (DispatchEvent) o;
+            event.end();
+            if (event.shouldCommit()) {
+                event.runs = runs;
+                event.commit();
+            }
+        }
+
+        private static void endRun(Object o, Registration registration, long lagInNanoseconds) {
+            RunEvent event = (RunEvent) o;
+            event.end();
+            if (event.shouldCommit()) {
+                event.expression = registration.getExpression().toString();
+                event.id = registration.getId();
+                event.lag = lagInNanoseconds;
+                event.commit();
+            }
+        }
+    }
+
+    @Name("cron.Tick")
+    @Label("Cron Tick")
+    @Category("Cron")
+    @Description("Matching the registered expressions against one time")
+    @StackTrace(false)
+    static final class TickEvent extends Event {
+        @Label("Time")
+        @Timestamp(Timestamp.MILLISECONDS_SINCE_EPOCH)
+        long time;
+
+        @Label("Evaluated")
+        int evaluated;
+
+        @Label("Matched")
+        int matched;
+
+        @Label("Dispatched")
+        int dispatched;
+
+        @Label("Skipped")
+        int skipped;
+    }
+
+    @Name("cron.Dispatch")
+    @Label("Cron Dispatch")
+    @Category("Cron")
+    @Description("Handing the runs matched by a tick to the executor")
+    @StackTrace(false)
+    static final class DispatchEvent extends Event {
+        @Label("Runs")
+        int runs;
+    }
+
+    @Name("cron.Run")
+    @Label("Cron Run")
+    @Category("Cron")
+    @Description("One run of a registered runnable")
+    @StackTrace(false)
+    static final class RunEvent extends Event {
+        @Label("Expression")
+        String expression;
+
+        @Label("Id")
+        String id;
+
+        @Label("Dispatch Lag")
+        @Timespan(Timespan.NANOSECONDS)
+        long lag;
+    }
+}
@@ -0,0 +1,89 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2013 Anders Wisch
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package cron;
+
+import com.google.common.base.Preconditions;
+
+import java.time.Clock;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+
+/**
+ * A lease store for nodes that run in the same process, mostly useful for testing.
+ */
+public class InMemoryLeaseStore implements LeaseStore {
+    private final Clock clock;
+    private final Map<String, Lease> leases;
+
+    public InMemoryLeaseStore() {
+        this(Clock.systemUTC());
+    }
+
+    public InMemoryLeaseStore(Clock clock) {
+        this.clock = Preconditions.checkNotNull(clock);
+        leases = new HashMap<>();
+    }
+
+    @Override
+    public synchronized boolean tryAcquire(String name, String owner, long durationInMilliseconds) {
+        long now = clock.millis();
+        Lease lease = leases.get(name);
+        if (lease != null && lease.expiresAt > now && !lease.owner.equals(owner))
+            return false;
+        leases.put(name, new Lease(owner, now + durationInMilliseconds));
+        return true;
+    }
+
+    @Override
+    public synchronized void release(String name, String owner) {
+        Lease lease = leases.get(name);
+        if (lease != null && lease.owner.equals(owner))
+            leases.remove(name);
+    }
+
+    @Override
+    public synchronized Map<String, String> owners(String prefix) {
+        long now = clock.millis();
+        Map<String, String> owners = new HashMap<>();
+        for (Iterator<Map.Entry<String, Lease>> i = leases.entrySet().iterator(); i.hasNext(); ) {
+            Map.Entry<String, Lease> entry = i.next();
+            if (entry.getValue().expiresAt <= now)
+                i.remove();
+            else if (entry.getKey().startsWith(prefix))
+                owners.put(entry.getKey(), entry.getValue().owner);
+        }
+        return owners;
+    }
+
+    private static final class Lease {
+        private final String owner;
+        private final long expiresAt;
+
+        private Lease(String owner, long expiresAt) {
+            this.owner = owner;
+            this.expiresAt = expiresAt;
+        }
+    }
+}
@@ -0,0 +1,49 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2013 Anders Wisch
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package cron;
+
+import java.util.Map;
+
+/**
+ * Shared storage for time-limited, named leases, used by the nodes of a {@link ClusteredCronSchedule} to announce
+ * themselves and to claim partitions of the registered jobs. Implementations must make {@link #tryAcquire} atomic
+ * across every node that shares the store.
+ */
+public interface LeaseStore {
+    /**
+     * Acquires the named lease for the owner, or extends it if the owner already holds it, so that it lasts for the
+     * given number of milliseconds. Returns false if another owner holds a lease that has not expired yet.
+     */
+    public boolean tryAcquire(String name, String owner, long durationInMilliseconds);
+
+    /**
+     * Gives up the named lease if the owner holds it.
+     */
+    public void release(String name, String owner);
+
+    /**
+     * Returns the owners of all unexpired leases whose names start with the given prefix, keyed by lease name.
+     */
+    public Map<String, String> owners(String prefix);
+}
@@ -0,0 +1,261 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2013 Anders Wisch
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package cron;
+
+import com.google.common.base.Preconditions;
+import com.google.common.collect.ImmutableList;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.time.ZonedDateTime;
+import java.time.temporal.ChronoUnit;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+
+/**
+ * Counts how often a set of expressions fire in each bucket of a window of time, for example fires per minute over
+ * the next 30 days, to plan capacity. Counting is split by expressions and by days into fork-join tasks, each of which
+ * walks its expressions' next times through one day and counts them into that day's buckets. The days are then
+ * concatenated and the counts of different expressions added together.
+ */
+public final class LoadForecast {
+    private static final int EXPRESSIONS_PER_TASK = 256;
+    private static final long MILLISECONDS_PER_TASK = Duration.ofDays(1).toMillis();
+
+    private final ZonedDateTime from, to;
+    private final Duration granularity;
+    private final long[] counts, sorted;
+    private final long total;
+    private final int peak;
+
+    protected LoadForecast(Builder b) {
+        from = b.from;
+        to = b.to;
+        granularity = b.granularity;
+        long window = Duration.between(from, to).toMillis(), bucket = granularity.toMillis();
+        long buckets = (window + bucket - 1) / bucket;
+        Preconditions.checkArgument(buckets < Integer.MAX_VALUE, "Too many buckets: %s", buckets);
+        counts = b.pool.invoke(new Count(b.expressions, 0, b.expressions.size(), 0, (int) buckets));
+        sorted = counts.clone();
+        Arrays.sort(sorted);
+        long total = 0;
+        int peak = 0;
+        for (int i = 0; i < counts.length; i++) {
+            total += counts[i];
+            if (counts[i] > counts[peak])
+                peak = i;
+        }
+        this.total = total;
+        this.peak = peak;
+    }
+
+    public static Builder builder(Collection<? extends CronExpression> expressions, ZonedDateTime from,
+                                  ZonedDateTime to) {
+        return new Builder(expressions, from, to);
+    }
+
+    public ZonedDateTime getFrom() {
+        return from;
+    }
+
+    public ZonedDateTime getTo() {
+        return to;
+    }
+
+    public Duration getGranularity() {
+        return granularity;
+    }
+
+    public int getBucketCount() {
+        return counts.length;
+    }
+
+    /**
+     * Returns the start of the given bucket. Only the last bucket may end early, at the end of the window.
+     */
+    public ZonedDateTime getBucketStart(int bucket) {
+        Preconditions.checkElementIndex(bucket, counts.length);
+        return from.toInstant().plus(granularity.multipliedBy(bucket)).atZone(from.getZone());
+    }
+
+    public long getCount(int bucket) {
+        return counts[bucket];
+    }
+
+    public long[] getCounts() {
+        return counts.clone();
+    }
+
+    public long getTotal() {
+        return total;
+    }
+
+    /**
+     * Returns the highest count of any bucket.
+     */
+    public long getPeak() {
+        return counts.length == 0 ? 0 : counts[peak];
+    }
+
+    /**
+     * Returns the start of the first bucket with the highest count, or null if the window is empty.
+     */
+    public ZonedDateTime getPeakTime() {
+        return counts.length == 0 ? null : getBucketStart(peak);
+    }
+
+    public double getMean() {
+        return counts.length == 0 ? 0 : (double) total / counts.length;
+    }
+
+    /**
+     * Returns the count that the given percentage of buckets are less than or equal to, or 0 if the window is empty.
+     */
+    public long getValueAtPercentile(double percentile) {
+        Preconditions.checkArgument(percentile >= 0 && percentile <= 100, "Bad percentile: %s", percentile);
+        if (sorted.length == 0)
+            return 0;
+        int rank = (int) Math.max(1, Math.ceil(percentile / 100 * sorted.length));
+        return sorted[rank - 1];
+    }
+
+    public long getMedian() {
+        return getValueAtPercentile(50);
+    }
+
+    public long get99thPercentile() {
+        return getValueAtPercentile(99);
+    }
+
+    @Override
+    public String toString() {
+        return "LoadForecast{from=" + from
+                + ", to=" + to
+                + ", granularity=" + granularity
+                + ", total=" + total
+                + ", median=" + getMedian()
+                + ", p99=" + get99thPercentile()
+                + ", peak=" + getPeak()
+                + ", peakTime=" + getPeakTime() + '}';
+    }
+
+    /**
+     * Counts the fires of a range of expressions into a range of buckets.
+     */
+    private final class Count extends RecursiveTask<long[]> {
+        private static final long serialVersionUID = 1L;
+
+        private final List<CronExpression> expressions;
+        private final int fromExpression, toExpression, fromBucket, toBucket;
+
+        private Count(List<CronExpression> expressions, int fromExpression, int toExpression, int fromBucket,
+                      int toBucket) {
+            this.expressions = expressions;
+            this.fromExpression = fromExpression;
+            this.toExpression = toExpression;
+            this.fromBucket = fromBucket;
+            this.toBucket = toBucket;
+        }
+
+        @Override
+        protected long[] compute() {
+            if (toExpression - fromExpression > EXPRESSIONS_PER_TASK) {
+                int middle = (fromExpression + toExpression) >>> 1;
+                Count left = new Count(expressions, fromExpression, middle, fromBucket, toBucket);
+                left.fork();
+                long[] right = new Count(expressions, middle, toExpression, fromBucket, toBucket).compute();
+                long[] counts = left.join();
+                for (int i = 0; i < counts.length; i++)
+                    counts[i] += right[i];
+                return counts;
+            }
+            if ((toBucket - fromBucket - 1) * granularity.toMillis() >= MILLISECONDS_PER_TASK) {
+                int middle = (fromBucket + toBucket) >>> 1;
+                Count left = new Count(expressions, fromExpression, toExpression, fromBucket, middle);
+                left.fork();
+                long[] right = new Count(expressions, fromExpression, toExpression, middle, toBucket).compute();
+                long[] counts = Arrays.copyOf(left.join(), toBucket - fromBucket);
+                System.arraycopy(right, 0, counts, middle - fromBucket, right.length);
+                return counts;
+            }
+            return count();
+        }
+
+        private long[] count() {
+            long[] counts = new long[toBucket - fromBucket];
+            long bucket = granularity.toMillis(), origin = from.toInstant().toEpochMilli();
+            Instant end = Instant.ofEpochMilli(Math.min(origin + toBucket * bucket, to.toInstant().toEpochMilli()));
+            // a second before the start, so that a fire right at the start is counted
+            ZonedDateTime start = Instant.ofEpochMilli(origin + fromBucket * bucket).atZone(from.getZone())
+                    .minusSeconds(1);
+            for (int i = fromExpression; i < toExpression; i++) {
+                CronExpression expression = expressions.get(i);
+                ZonedDateTime t = expression.nextTimeAfter(start);
+                while (t != null && t.toInstant().isBefore(end)) {
+                    counts[(int) ((t.toInstant().toEpochMilli() - origin) / bucket) - fromBucket]++;
+                    t = expression.nextTimeAfter(t);
+                }
+            }
+            return counts;
+        }
+    }
+
+    public static class Builder {
+        private final List<CronExpression> expressions;
+        private final ZonedDateTime from, to;
+        private Duration granularity;
+        private ForkJoinPool pool;
+
+        private Builder(Collection<? extends CronExpression> expressions, ZonedDateTime from, ZonedDateTime to) {
+            this.expressions = ImmutableList.copyOf(expressions);
+            this.from = from.truncatedTo(ChronoUnit.SECONDS);
+            this.to = Preconditions.checkNotNull(to);
+            Preconditions.checkArgument(!to.isBefore(from), "Window ends before it starts: %s - %s", from, to);
+            granularity = Duration.ofMinutes(1);
+            pool = ForkJoinPool.commonPool();
+        }
+
+        /**
+         * Sets the width of each bucket, a whole number of seconds. By default fires are counted per minute.
+         */
+        public Builder withGranularity(Duration granularity) {
+            Preconditions.checkArgument(granularity.getSeconds() > 0 && granularity.getNano() == 0,
+                    "Granularity must be a positive whole number of seconds: %s", granularity);
+            this.granularity = granularity;
+            return this;
+        }
+
+        public Builder withPool(ForkJoinPool pool) {
+            this.pool = Preconditions.checkNotNull(pool);
+            return this;
+        }
+
+        public LoadForecast build() {
+            return new LoadForecast(this);
+        }
+    }
+}
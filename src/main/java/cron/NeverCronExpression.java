@@ -0,0 +1,61 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2013 Anders Wisch
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package cron;
+
+import java.time.ZonedDateTime;
+
+/**
+ * Matches nothing, for example the intersection of expressions whose fields have no values in common.
+ */
+final class NeverCronExpression extends CronExpression {
+    static final NeverCronExpression instance = new NeverCronExpression();
+
+    private NeverCronExpression() {
+    }
+
+    @Override
+    public boolean matches(ZonedDateTime t) {
+        return false;
+    }
+
+    @Override
+    public ZonedDateTime nextTimeAfter(ZonedDateTime t) {
+        return null;
+    }
+
+    @Override
+    public boolean isSatisfiable() {
+        return false;
+    }
+
+    @Override
+    int cost() {
+        return 0;
+    }
+
+    @Override
+    public String toString() {
+        return "never";
+    }
+}
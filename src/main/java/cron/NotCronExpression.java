@@ -0,0 +1,75 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2013 Anders Wisch
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package cron;
+
+import com.google.common.base.Preconditions;
+
+import java.time.ZonedDateTime;
+import java.time.temporal.ChronoUnit;
+
+/**
+ * Matches the times that its expression does not match. On its own it can only find its next time by stepping
+ * through times one at a time, as {@link CronExpression#nextTimeAfter} does by default, and so gives up on times
+ * more than about a year away. It is best combined with {@link CronExpression#and(CronExpression...)}, which takes
+ * its candidates from the other expressions.
+ */
+final class NotCronExpression extends CronExpression {
+    private final CronExpression expression;
+
+    NotCronExpression(CronExpression expression) {
+        this.expression = Preconditions.checkNotNull(expression);
+    }
+
+    @Override
+    public boolean matches(ZonedDateTime t) {
+        return !expression.matches(t);
+    }
+
+    @Override
+    int cost() {
+        return expression.cost();
+    }
+
+    @Override
+    ChronoUnit resolution() {
+        return expression.resolution();
+    }
+
+    @Override
+    public String toString() {
+        return "!(" + expression + ")";
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (o == null || getClass() != o.getClass()) return false;
+        return expression.equals(((NotCronExpression) o).expression);
+    }
+
+    @Override
+    public int hashCode() {
+        return ~expression.hashCode();
+    }
+}
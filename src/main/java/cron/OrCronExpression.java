@@ -0,0 +1,127 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2013 Anders Wisch
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package cron;
+
+import com.google.common.base.Joiner;
+import com.google.common.base.Preconditions;
+import com.google.common.collect.ImmutableList;
+
+import java.time.LocalDateTime;
+import java.time.ZonedDateTime;
+import java.time.temporal.ChronoUnit;
+import java.util.List;
+
+/**
+ * Matches the times that any of its expressions match. Expressions are tried cheapest first.
+ */
+final class OrCronExpression extends CronExpression {
+    private final ImmutableList<CronExpression> expressions;
+    private final int cost;
+
+    OrCronExpression(List<CronExpression> expressions) {
+        Preconditions.checkArgument(!expressions.isEmpty(), "Nothing to combine");
+        this.expressions = byCost(expressions);
+        int cost = 0;
+        for (CronExpression expression : this.expressions)
+            cost += expression.cost();
+        this.cost = cost;
+    }
+
+    @Override
+    public boolean matches(ZonedDateTime t) {
+        for (CronExpression expression : expressions)
+            if (expression.matches(t))
+                return true;
+        return false;
+    }
+
+    /**
+     * Returns the earliest of the expressions' next times.
+     */
+    @Override
+    public ZonedDateTime nextTimeAfter(ZonedDateTime after) {
+        ZonedDateTime t = null;
+        for (CronExpression expression : expressions) {
+            ZonedDateTime next = expression.nextTimeAfter(after);
+            if (next != null && (t == null || next.isBefore(t)))
+                t = next;
+        }
+        return t;
+    }
+
+    @Override
+    public boolean isSatisfiable() {
+        for (CronExpression expression : expressions)
+            if (expression.isSatisfiable())
+                return true;
+        return false;
+    }
+
+    /**
+     * Returns the latest of the last possible fires of the expressions that can match, or null if any of them has no
+     * end.
+     */
+    @Override
+    public LocalDateTime lastPossibleFire() {
+        LocalDateTime last = null;
+        for (CronExpression expression : expressions) {
+            if (!expression.isSatisfiable())
+                continue;
+            LocalDateTime t = expression.lastPossibleFire();
+            if (t == null)
+                return null;
+            if (last == null || t.isAfter(last))
+                last = t;
+        }
+        return last;
+    }
+
+    @Override
+    int cost() {
+        return cost;
+    }
+
+    @Override
+    ChronoUnit resolution() {
+        return finest(expressions);
+    }
+
+    @Override
+    public String toString() {
+        return "(" + Joiner.on(") | (").join(expressions) + ")";
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (o == null || getClass() != o.getClass()) return false;
+        OrCronExpression that = (OrCronExpression) o;
+        return expressions.equals(that.expressions);
+    }
+
+    @Override
+    public int hashCode() {
+        return expressions.hashCode();
+    }
+}
@@ -40,4 +40,9 @@ final class RebootCronExpression extends CronExpression {
     public boolean matches(ZonedDateTime t) {
         return matchOnce.getAndSet(false);
     }
+
+    @Override
+    public ZonedDateTime nextTimeAfter(ZonedDateTime t) {
+        return null;
+    }
 }
@@ -0,0 +1,219 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2013 Anders Wisch
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package cron;
+
+import com.google.common.base.Preconditions;
+
+import java.time.ZoneId;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * A runnable registered with a {@link CronSchedule} along with how the schedule should treat it.
+ */
+public class Registration {
+    static final Runnable QUEUED = new Runnable() {
+        @Override
+        public void run() {
+        }
+    };
+
+    private final CronExpression expression;
+    private final Runnable runnable;
+    private final MisfirePolicy misfirePolicy;
+    private final ConcurrencyPolicy concurrencyPolicy;
+    private final ZoneId zone;
+    private final String id;
+    // runs in flight shifted left by one, with the lowest bit set while a run is queued
+    private final AtomicInteger state;
+    private volatile Runnable queued;
+
+    protected Registration(Builder b) {
+        expression = b.expression;
+        runnable = b.runnable;
+        misfirePolicy = b.misfirePolicy;
+        concurrencyPolicy = b.concurrencyPolicy;
+        zone = b.zone;
+        id = b.id;
+        state = new AtomicInteger();
+    }
+
+    public static Builder builder(CronExpression expression, Runnable runnable) {
+        return new Builder(expression, runnable);
+    }
+
+    public CronExpression getExpression() {
+        return expression;
+    }
+
+    public Runnable getRunnable() {
+        return runnable;
+    }
+
+    public MisfirePolicy getMisfirePolicy() {
+        return misfirePolicy;
+    }
+
+    public ConcurrencyPolicy getConcurrencyPolicy() {
+        return concurrencyPolicy;
+    }
+
+    /**
+     * Returns the zone whose local time the expression is matched against, or null to use the zone of the time the
+     * schedule runs.
+     */
+    public ZoneId getZone() {
+        return zone;
+    }
+
+    /**
+     * Returns the id that identifies this registration in a {@link ScheduleJournal}, or null if it is not journaled.
+     */
+    public String getId() {
+        return id;
+    }
+
+    /**
+     * Returns the runnable to dispatch for one run, wrapped to count it as in flight. Returns {@link #QUEUED} if the
+     * {@link ConcurrencyPolicy} queues the run, in which case the run ahead of it starts it once it finishes, and null
+     * if the policy skips the run. Callers must not acquire concurrently, which a schedule ensures by holding its
+     * registrations' lock.
+     */
+    Runnable acquire(Runnable runnable) {
+        if (concurrencyPolicy.isUnbounded())
+            return runnable;
+        int max = concurrencyPolicy.getMaxInFlight() << 1;
+        for (;;) {
+            int current = state.get();
+            if (current < max) {
+                if (state.compareAndSet(current, current + 2))
+                    return new InFlight(runnable);
+            } else if (concurrencyPolicy.isQueueOne() && (current & 1) == 0) {
+                // only written while the flag is clear, and only read while it is set
+                queued = runnable;
+                if (state.compareAndSet(current, current | 1))
+                    return QUEUED;
+            } else {
+                return null;
+            }
+        }
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (o == null || getClass() != o.getClass()) return false;
+        Registration that = (Registration) o;
+        return expression.equals(that.expression) && runnable.equals(that.runnable);
+    }
+
+    @Override
+    public int hashCode() {
+        return 31 * expression.hashCode() + runnable.hashCode();
+    }
+
+    private final class InFlight implements Runnable {
+        private final Runnable runnable;
+
+        private InFlight(Runnable runnable) {
+            this.runnable = runnable;
+        }
+
+        @Override
+        public void run() {
+            Runnable next = runnable;
+            while (next != null) {
+                Runnable current = next;
+                try {
+                    current.run();
+                } catch (RuntimeException | Error e) {
+                    next = release();
+                    if (next == null)
+                        throw e;
+                    // report it the way the executor would have, then go on to the queued run
+                    Thread thread = Thread.currentThread();
+                    thread.getUncaughtExceptionHandler().uncaughtException(thread, e);
+                    continue;
+                }
+                next = release();
+            }
+        }
+
+        /**
+         * Takes the queued run so that it runs next on this thread, or if there is none, stops counting this run as in
+         * flight and returns null.
+         */
+        private Runnable release() {
+            for (;;) {
+                int current = state.get();
+                if ((current & 1) != 0) {
+                    Runnable next = queued;
+                    if (state.compareAndSet(current, current & ~1))
+                        return next;
+                } else if (state.compareAndSet(current, current - 2)) {
+                    return null;
+                }
+            }
+        }
+    }
+
+    public static class Builder {
+        private final CronExpression expression;
+        private final Runnable runnable;
+        private MisfirePolicy misfirePolicy;
+        private ConcurrencyPolicy concurrencyPolicy;
+        private ZoneId zone;
+        private String id;
+
+        private Builder(CronExpression expression, Runnable runnable) {
+            this.expression = Preconditions.checkNotNull(expression);
+            this.runnable = Preconditions.checkNotNull(runnable);
+            misfirePolicy = MisfirePolicy.SKIP;
+            concurrencyPolicy = ConcurrencyPolicy.unbounded();
+        }
+
+        public Builder withMisfirePolicy(MisfirePolicy misfirePolicy) {
+            this.misfirePolicy = Preconditions.checkNotNull(misfirePolicy);
+            return this;
+        }
+
+        public Builder withConcurrencyPolicy(ConcurrencyPolicy concurrencyPolicy) {
+            this.concurrencyPolicy = Preconditions.checkNotNull(concurrencyPolicy);
+            return this;
+        }
+
+        public Builder withZone(ZoneId zone) {
+            this.zone = zone;
+            return this;
+        }
+
+        public Builder withId(String id) {
+            this.id = id;
+            return this;
+        }
+
+        public Registration build() {
+            return new Registration(this);
+        }
+    }
+}
@@ -0,0 +1,497 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2013 Anders Wisch
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package cron;
+
+import com.google.common.base.Charsets;
+import com.google.common.base.Preconditions;
+import com.google.common.collect.ImmutableList;
+
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataOutputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.Buffer;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.time.Instant;
+import java.time.ZoneId;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.zip.CRC32;
+
+/**
+ * Persists the registrations of a {@link CronSchedule} and the times they last fired, so that a restarted schedule can
+ * rebuild its registry and catch up on missed fires without going back to wherever the registrations came from.
+ * <p>
+ * Changes are appended to a memory-mapped journal file. When the journal fills up, the current state is written to a
+ * snapshot file and the journal starts over, so recovery is one sequential pass over the snapshot followed by one
+ * over the journal. Every registration is given a slot number when it is first recorded, and removals and fires refer
+ * to it by slot, so replaying them needs neither string decoding nor hashing. Every journal record carries a checksum
+ * that covers the journal's generation, which is bumped whenever a snapshot is taken, so a torn or stale tail is never
+ * replayed. Records are in the page cache as soon as they are appended and so survive the process crashing; call
+ * {@link #flush()} to also survive the machine crashing.
+ * <p>
+ * Only registrations with an {@link Registration#getId() id} are journaled, and their expressions are stored as
+ * strings, so they must be expressions whose {@code toString()} can be parsed again.
+ */
+public class ScheduleJournal implements Closeable {
+    public static final int DEFAULT_CAPACITY_IN_BYTES = 64 * 1024 * 1024;
+
+    private static final String JOURNAL_FILE = "journal", SNAPSHOT_FILE = "snapshot", TEMPORARY_SUFFIX = ".tmp";
+    private static final int MAGIC = 0x43524f4e, HEADER_SIZE = 16, RECORD_HEADER_SIZE = 8, END_MARKER_SIZE = 4;
+    private static final byte REGISTER = 1, REMOVE = 2, FIRE = 3;
+    private static final long NEVER = Long.MIN_VALUE;
+    private static final MisfirePolicy[] MISFIRE_POLICIES = MisfirePolicy.values();
+
+    private final Path directory;
+    private final FileChannel channel;
+    private final MappedByteBuffer journal;
+    private final Map<String, Registered> registered;
+    private final CRC32 crc;
+    private final byte[] generationBytes;
+    private Registered[] slots;
+    private long[] lastFires;
+    private int[] freeSlots;
+    private int slotCount, freeSlotCount;
+    private ByteBuffer scratch;
+    private long generation;
+
+    public ScheduleJournal(Path directory) {
+        this(directory, DEFAULT_CAPACITY_IN_BYTES);
+    }
+
+    /**
+     * Opens the journal in the given directory, creating it if necessary, and reads back everything recorded in it.
+     */
+    public ScheduleJournal(Path directory, int capacityInBytes) {
+        Preconditions.checkArgument(capacityInBytes > HEADER_SIZE + RECORD_HEADER_SIZE + END_MARKER_SIZE,
+                "Capacity is too small");
+        registered = new LinkedHashMap<>();
+        crc = new CRC32();
+        generationBytes = new byte[8];
+        slots = new Registered[16];
+        lastFires = new long[16];
+        freeSlots = new int[16];
+        scratch = ByteBuffer.allocate(256);
+        // many registrations share an expression, so each distinct one is only decoded once
+        Map<ByteBuffer, String> expressions = new HashMap<>();
+        long snapshotGeneration;
+        try {
+            this.directory = Files.createDirectories(directory);
+            snapshotGeneration = readSnapshot(expressions);
+            channel = FileChannel.open(directory.resolve(JOURNAL_FILE), StandardOpenOption.CREATE,
+                    StandardOpenOption.READ, StandardOpenOption.WRITE);
+            journal = channel.map(FileChannel.MapMode.READ_WRITE, 0, Math.max(capacityInBytes, channel.size()));
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        if (journal.getInt(0) == MAGIC && journal.getLong(4) == snapshotGeneration) {
+            setGeneration(snapshotGeneration);
+            replay(expressions);
+        } else {
+            // a new journal, or one that was already folded into the snapshot before it could be reset
+            setGeneration(snapshotGeneration);
+            reset();
+        }
+        for (int slot = slotCount - 1; slot >= 0; slot--)
+            if (slots[slot] == null)
+                freeSlot(slot);
+    }
+
+    /**
+     * Returns everything recorded so far, in the order the registrations were first made.
+     */
+    public synchronized ImmutableList<Entry> entries() {
+        ImmutableList.Builder<Entry> entries = ImmutableList.builder();
+        for (Registered r : registered.values())
+            entries.add(new Entry(r.id, r.expression, r.zone, r.misfirePolicy, r.registeredAt, lastFires[r.slot]));
+        return entries.build();
+    }
+
+    public synchronized void registered(Registration registration) {
+        registered(registration, System.currentTimeMillis());
+    }
+
+    /**
+     * Records a registration made at the given time, from which a registration that has not fired yet catches up.
+     */
+    public synchronized void registered(Registration registration, long timeInMilliseconds) {
+        String id = Preconditions.checkNotNull(registration.getId(), "Only registrations with ids can be journaled");
+        String expression = registration.getExpression().toString();
+        // the zone's id, or empty for registrations that run in the schedule's zone
+        String zone = registration.getZone() == null ? "" : registration.getZone().getId();
+        Registered existing = registered.get(id);
+        int slot = existing != null ? existing.slot : allocateSlot();
+        ByteBuffer record = record(REGISTER);
+        record.putInt(slot);
+        record.putLong(timeInMilliseconds);
+        record = putString(record, id);
+        record = putString(record, expression);
+        record = putString(record, zone);
+        record.put((byte) registration.getMisfirePolicy().ordinal());
+        append(record);
+        register(new Registered(id, expression, zone, registration.getMisfirePolicy(), slot, timeInMilliseconds),
+                existing == null);
+    }
+
+    public synchronized void removed(String id) {
+        Registered existing = registered.get(id);
+        if (existing == null)
+            return;
+        ByteBuffer record = record(REMOVE);
+        record.putInt(existing.slot);
+        append(record);
+        remove(existing.slot);
+        freeSlot(existing.slot);
+    }
+
+    /**
+     * Records that the registration with the given id has finished running for the given time.
+     */
+    public synchronized void fired(String id, long timeInMilliseconds) {
+        Registered existing = registered.get(id);
+        if (existing == null)
+            return;
+        ByteBuffer record = record(FIRE);
+        record.putInt(existing.slot);
+        record.putLong(timeInMilliseconds);
+        append(record);
+        fire(existing.slot, timeInMilliseconds);
+    }
+
+    /**
+     * Writes the current state to the snapshot file and starts the journal over. This happens by itself whenever the
+     * journal fills up, but can also be called periodically to keep recovery short.
+     */
+    public synchronized void compact() {
+        long next = generation + 1;
+        Path snapshot = directory.resolve(SNAPSHOT_FILE), temporary = directory.resolve(SNAPSHOT_FILE + TEMPORARY_SUFFIX);
+        try {
+            try (FileOutputStream file = new FileOutputStream(temporary.toFile());
+                 DataOutputStream out = new DataOutputStream(new BufferedOutputStream(file, 1 << 16))) {
+                out.writeInt(MAGIC);
+                out.writeLong(next);
+                out.writeInt(registered.size());
+                for (Registered r : registered.values()) {
+                    out.writeInt(r.slot);
+                    writeString(out, r.id);
+                    writeString(out, r.expression);
+                    writeString(out, r.zone);
+                    out.writeByte(r.misfirePolicy.ordinal());
+                    out.writeLong(r.registeredAt);
+                    out.writeLong(lastFires[r.slot]);
+                }
+                out.flush();
+                file.getFD().sync();
+            }
+            Files.move(temporary, snapshot, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        // a crash before this point leaves the old journal behind, which is then ignored for being a generation behind
+        setGeneration(next);
+        reset();
+    }
+
+    /**
+     * Forces appended records out to the storage device.
+     */
+    public synchronized void flush() {
+        journal.force();
+    }
+
+    @Override
+    public synchronized void close() {
+        try {
+            journal.force();
+            channel.close();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private long readSnapshot(Map<ByteBuffer, String> expressions) throws IOException {
+        Path snapshot = directory.resolve(SNAPSHOT_FILE);
+        if (!Files.exists(snapshot))
+            return 0;
+        ByteBuffer in;
+        try (FileChannel file = FileChannel.open(snapshot, StandardOpenOption.READ)) {
+            in = file.map(FileChannel.MapMode.READ_ONLY, 0, file.size());
+        }
+        Preconditions.checkState(in.getInt() == MAGIC, "Not a snapshot: %s", snapshot);
+        long snapshotGeneration = in.getLong();
+        for (int i = in.getInt(); i > 0; i--) {
+            int slot = in.getInt();
+            String id = getString(in), expression = getString(in, expressions), zone = getString(in, expressions);
+            MisfirePolicy misfirePolicy = MISFIRE_POLICIES[in.get()];
+            long registeredAt = in.getLong();
+            register(new Registered(id, expression, zone, misfirePolicy, slot, registeredAt), true);
+            lastFires[slot] = in.getLong();
+        }
+        return snapshotGeneration;
+    }
+
+    private void replay(Map<ByteBuffer, String> expressions) {
+        // buffers are positioned through Buffer so that builds on newer JDKs still run on Java 8
+        int position = HEADER_SIZE;
+        while (journal.capacity() - position >= RECORD_HEADER_SIZE) {
+            int length = journal.getInt(position), checksum = journal.getInt(position + 4);
+            if (length <= 0 || length > journal.capacity() - position - RECORD_HEADER_SIZE)
+                break;
+            ((Buffer) journal).position(position + RECORD_HEADER_SIZE);
+            ByteBuffer record = ((ByteBuffer) journal).slice();
+            ((Buffer) record).limit(length);
+            if (checksum != checksum(record))
+                break;
+            apply(record, expressions);
+            position += RECORD_HEADER_SIZE + length;
+        }
+        // whatever stopped the replay gets overwritten by the next record
+        ((Buffer) journal).position(position);
+    }
+
+    private void apply(ByteBuffer record, Map<ByteBuffer, String> expressions) {
+        byte type = record.get();
+        int slot = record.getInt();
+        if (type == REGISTER) {
+            long registeredAt = record.getLong();
+            String id = getString(record), expression = getString(record, expressions);
+            String zone = getString(record, expressions);
+            MisfirePolicy misfirePolicy = MISFIRE_POLICIES[record.get()];
+            boolean added = slot >= slotCount || slots[slot] == null;
+            register(new Registered(id, expression, zone, misfirePolicy, slot, registeredAt), added);
+        } else if (type == REMOVE) {
+            remove(slot);
+        } else if (type == FIRE) {
+            fire(slot, record.getLong());
+        }
+    }
+
+    private void register(Registered r, boolean added) {
+        if (r.slot >= slots.length) {
+            int length = Math.max(slots.length * 2, r.slot + 1);
+            slots = Arrays.copyOf(slots, length);
+            lastFires = Arrays.copyOf(lastFires, length);
+        }
+        if (added)
+            lastFires[r.slot] = NEVER;
+        slots[r.slot] = r;
+        slotCount = Math.max(slotCount, r.slot + 1);
+        registered.put(r.id, r);
+    }
+
+    private void remove(int slot) {
+        if (slot < slotCount && slots[slot] != null) {
+            registered.remove(slots[slot].id);
+            slots[slot] = null;
+        }
+    }
+
+    private void fire(int slot, long timeInMilliseconds) {
+        if (slot < slotCount && slots[slot] != null && timeInMilliseconds > lastFires[slot])
+            lastFires[slot] = timeInMilliseconds;
+    }
+
+    private int allocateSlot() {
+        return freeSlotCount > 0 ? freeSlots[--freeSlotCount] : slotCount;
+    }
+
+    private void freeSlot(int slot) {
+        if (freeSlotCount == freeSlots.length)
+            freeSlots = Arrays.copyOf(freeSlots, freeSlots.length * 2);
+        freeSlots[freeSlotCount++] = slot;
+    }
+
+    private void setGeneration(long generation) {
+        this.generation = generation;
+        for (int i = 0; i < 8; i++)
+            generationBytes[i] = (byte) (generation >>> (56 - 8 * i));
+    }
+
+    private void reset() {
+        journal.putInt(0, MAGIC);
+        journal.putLong(4, generation);
+        journal.putInt(HEADER_SIZE, 0);
+        ((Buffer) journal).position(HEADER_SIZE);
+    }
+
+    private ByteBuffer record(byte type) {
+        ((Buffer) scratch).clear();
+        scratch.put(type);
+        return scratch;
+    }
+
+    private void append(ByteBuffer record) {
+        ((Buffer) record).flip();
+        int length = record.remaining();
+        if (journal.remaining() < RECORD_HEADER_SIZE + length + END_MARKER_SIZE) {
+            compact();
+            Preconditions.checkState(journal.remaining() >= RECORD_HEADER_SIZE + length + END_MARKER_SIZE,
+                    "Record of %s bytes does not fit in the journal", length);
+        }
+        int checksum = checksum(record);
+        int start = journal.position();
+        ((Buffer) journal).position(start + RECORD_HEADER_SIZE);
+        journal.put(record);
+        journal.putInt(journal.position(), 0);
+        journal.putInt(start + 4, checksum);
+        // the length goes in last, so a record is never seen before all of it has been written
+        journal.putInt(start, length);
+    }
+
+    private int checksum(ByteBuffer record) {
+        crc.reset();
+        crc.update(generationBytes);
+        crc.update(record.duplicate());
+        return (int) crc.getValue();
+    }
+
+    /**
+     * Appends a string to the record, returning a larger copy of the record if it did not fit. There is always room
+     * for a long after the string.
+     */
+    private ByteBuffer putString(ByteBuffer record, String s) {
+        byte[] bytes = s.getBytes(Charsets.UTF_8);
+        Preconditions.checkArgument(bytes.length <= 0xffff, "String is too long: %s", s);
+        if (record.remaining() < bytes.length + 2 + 8) {
+            ByteBuffer larger = ByteBuffer.allocate(Math.max(record.capacity() * 2, record.position() + bytes.length + 10));
+            ((Buffer) record).flip();
+            larger.put(record);
+            scratch = record = larger;
+        }
+        record.putShort((short) bytes.length);
+        record.put(bytes);
+        return record;
+    }
+
+    private static String getString(ByteBuffer in) {
+        byte[] bytes = new byte[in.getShort() & 0xffff];
+        in.get(bytes);
+        return new String(bytes, Charsets.UTF_8);
+    }
+
+    private static String getString(ByteBuffer in, Map<ByteBuffer, String> cache) {
+        int length = in.getShort() & 0xffff;
+        ByteBuffer bytes = in.slice();
+        ((Buffer) bytes).limit(length);
+        ((Buffer) in).position(in.position() + length);
+        String s = cache.get(bytes);
+        if (s == null) {
+            byte[] copy = new byte[length];
+            bytes.duplicate().get(copy);
+            s = new String(copy, Charsets.UTF_8);
+            cache.put(bytes, s);
+        }
+        return s;
+    }
+
+    private static void writeString(DataOutputStream out, String s) throws IOException {
+        byte[] bytes = s.getBytes(Charsets.UTF_8);
+        out.writeShort(bytes.length);
+        out.write(bytes);
+    }
+
+    private static final class Registered {
+        private final String id, expression, zone;
+        private final MisfirePolicy misfirePolicy;
+        private final int slot;
+        private final long registeredAt;
+
+        private Registered(String id, String expression, String zone, MisfirePolicy misfirePolicy, int slot,
+                           long registeredAt) {
+            this.id = id;
+            this.expression = expression;
+            this.zone = zone;
+            this.misfirePolicy = misfirePolicy;
+            this.slot = slot;
+            this.registeredAt = registeredAt;
+        }
+    }
+
+    /**
+     * A journaled registration, when it was made and the last time it fired.
+     */
+    public static final class Entry {
+        private final String id, expression, zone;
+        private final MisfirePolicy misfirePolicy;
+        private final long registrationInMilliseconds, lastFireInMilliseconds;
+
+        private Entry(String id, String expression, String zone, MisfirePolicy misfirePolicy,
+                      long registrationInMilliseconds, long lastFireInMilliseconds) {
+            this.id = id;
+            this.expression = expression;
+            this.zone = zone;
+            this.misfirePolicy = misfirePolicy;
+            this.registrationInMilliseconds = registrationInMilliseconds;
+            this.lastFireInMilliseconds = lastFireInMilliseconds;
+        }
+
+        public String getId() {
+            return id;
+        }
+
+        public String getExpression() {
+            return expression;
+        }
+
+        /**
+         * Returns the zone the registration runs in, or null if it runs in the zone of the schedule.
+         */
+        public ZoneId getZone() {
+            return zone.isEmpty() ? null : ZoneId.of(zone);
+        }
+
+        public MisfirePolicy getMisfirePolicy() {
+            return misfirePolicy;
+        }
+
+        public Instant getRegistrationTime() {
+            return Instant.ofEpochMilli(registrationInMilliseconds);
+        }
+
+        /**
+         * Returns the last time the registration fired, or null if it has not fired since it was registered.
+         */
+        public Instant getLastFireTime() {
+            return lastFireInMilliseconds == NEVER ? null : Instant.ofEpochMilli(lastFireInMilliseconds);
+        }
+    }
+
+    /**
+     * Turns recovered entries back into registrations, typically by parsing the expression and looking up the
+     * runnable by id. Returning null leaves the entry out of the schedule.
+     */
+    public interface Resolver {
+        public Registration resolve(Entry entry);
+    }
+}
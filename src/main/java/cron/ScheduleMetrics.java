@@ -0,0 +1,407 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2013 Anders Wisch
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package cron;
+
+import com.google.common.base.Supplier;
+
+import javax.management.JMException;
+import javax.management.ObjectName;
+import java.lang.management.ManagementFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Counters and histograms a {@link CronSchedule} updates as it ticks and runs things. Recording never blocks, so it
+ * is cheap enough to leave on; {@link #snapshot(int)} reads a consistent-enough copy for reporting, and
+ * {@link #registerMBean(String, Supplier)} publishes snapshots over JMX.
+ */
+public class ScheduleMetrics {
+    private final LongAdder evaluated, matched, dispatched, skipped, queued, running, retired, unsatisfiable;
+    private final LatencyHistogram matching, lateness, dispatchLag, duration;
+
+    public ScheduleMetrics() {
+        evaluated = new LongAdder();
+        matched = new LongAdder();
+        dispatched = new LongAdder();
+        skipped = new LongAdder();
+        queued = new LongAdder();
+        running = new LongAdder();
+        retired = new LongAdder();
+        unsatisfiable = new LongAdder();
+        matching = new LatencyHistogram();
+        lateness = new LatencyHistogram();
+        dispatchLag = new LatencyHistogram();
+        duration = new LatencyHistogram();
+    }
+
+    void recordMatching(int evaluated, int matched, int dispatched, long nanoseconds) {
+        this.evaluated.add(evaluated);
+        this.matched.add(matched);
+        this.dispatched.add(dispatched);
+        matching.record(nanoseconds);
+    }
+
+    void recordSkipped(int skipped) {
+        if (skipped > 0)
+            this.skipped.add(skipped);
+    }
+
+    void recordRetired(int retired) {
+        if (retired > 0)
+            this.retired.add(retired);
+    }
+
+    void recordUnsatisfiable() {
+        unsatisfiable.increment();
+    }
+
+    void recordLateness(long nanoseconds) {
+        lateness.record(nanoseconds);
+    }
+
+    /**
+     * Wraps a run so that the time it waits to start and the time it takes are recorded. The scheduled time is given
+     * on the {@link System#nanoTime()} clock. Runs that are not skipped must be counted with
+     * {@link #recordQueued(int)}.
+     */
+    Runnable timed(Registration registration, Runnable runnable, long scheduledNanoseconds) {
+        return new Timed(registration, runnable, scheduledNanoseconds);
+    }
+
+    void recordQueued(int runs) {
+        if (runs > 0)
+            queued.add(runs);
+    }
+
+    public Snapshot snapshot(int registrations) {
+        LatencyHistogram.Snapshot matching = this.matching.snapshot();
+        return new Snapshot(
+                registrations,
+                matching.getCount(),
+                evaluated.sum(),
+                matched.sum(),
+                dispatched.sum(),
+                skipped.sum(),
+                queued.sum(),
+                running.sum(),
+                retired.sum(),
+                unsatisfiable.sum(),
+                matching,
+                lateness.snapshot(),
+                dispatchLag.snapshot(),
+                duration.snapshot());
+    }
+
+    /**
+     * Registers an MXBean named {@code cron:type=Schedule,name=<name>} that reads a fresh snapshot from the supplier
+     * for every attribute, and returns its name so it can be unregistered.
+     */
+    public static ObjectName registerMBean(String name, Supplier<Snapshot> metrics) {
+        try {
+            ObjectName objectName = new ObjectName("cron:type=Schedule,name=" + ObjectName.quote(name));
+            ManagementFactory.getPlatformMBeanServer().registerMBean(new Bean(metrics), objectName);
+            return objectName;
+        } catch (JMException e) {
+            throw new IllegalArgumentException("Could not register metrics for " + name, e);
+        }
+    }
+
+    private final class Timed implements Runnable {
+        private final Registration registration;
+        private final Runnable runnable;
+        private final long scheduledNanoseconds;
+
+        private Timed(Registration registration, Runnable runnable, long scheduledNanoseconds) {
+            this.registration = registration;
+            this.runnable = runnable;
+            this.scheduledNanoseconds = scheduledNanoseconds;
+        }
+
+        @Override
+        public void run() {
+            long start = System.nanoTime(), lag = start - scheduledNanoseconds;
+            queued.decrement();
+            running.increment();
+            dispatchLag.record(lag);
+            Object event = FlightRecorderEvents.beginRun();
+            try {
+                runnable.run();
+            } finally {
+                running.decrement();
+                duration.record(System.nanoTime() - start);
+                FlightRecorderEvents.endRun(event, registration, lag);
+            }
+        }
+    }
+
+    public static final class Snapshot {
+        private final long registrations, ticks, evaluated, matched, dispatched, skipped, queued, running, retired,
+                unsatisfiable;
+        private final LatencyHistogram.Snapshot matching, lateness, dispatchLag, duration;
+
+        Snapshot(long registrations, long ticks, long evaluated, long matched, long dispatched, long skipped, long queued,
+                 long running, long retired, long unsatisfiable, LatencyHistogram.Snapshot matching,
+                 LatencyHistogram.Snapshot lateness,
+                 LatencyHistogram.Snapshot dispatchLag, LatencyHistogram.Snapshot duration) {
+            this.registrations = registrations;
+            this.ticks = ticks;
+            this.evaluated = evaluated;
+            this.matched = matched;
+            this.dispatched = dispatched;
+            this.skipped = skipped;
+            this.queued = queued;
+            this.running = running;
+            this.retired = retired;
+            this.unsatisfiable = unsatisfiable;
+            this.matching = matching;
+            this.lateness = lateness;
+            this.dispatchLag = dispatchLag;
+            this.duration = duration;
+        }
+
+        /**
+         * Combines the metrics of schedules that tick side by side, such as the partitions of a
+         * {@link ShardedCronSchedule}. Counts and histograms are added up, except for ticks: the schedules see the
+         * same ones, so the most any of them has seen is kept.
+         */
+        public Snapshot merge(Snapshot other) {
+            return new Snapshot(
+                    registrations + other.registrations,
+                    Math.max(ticks, other.ticks),
+                    evaluated + other.evaluated,
+                    matched + other.matched,
+                    dispatched + other.dispatched,
+                    skipped + other.skipped,
+                    queued + other.queued,
+                    running + other.running,
+                    retired + other.retired,
+                    unsatisfiable + other.unsatisfiable,
+                    matching.merge(other.matching),
+                    lateness.merge(other.lateness),
+                    dispatchLag.merge(other.dispatchLag),
+                    duration.merge(other.duration));
+        }
+
+        public long getRegistrations() {
+            return registrations;
+        }
+
+        public long getTicks() {
+            return ticks;
+        }
+
+        /**
+         * How many times an expression was checked against a tick.
+         */
+        public long getEvaluated() {
+            return evaluated;
+        }
+
+        /**
+         * How many of the expressions checked against a tick matched it.
+         */
+        public long getMatched() {
+            return matched;
+        }
+
+        /**
+         * How many runnables were handed to the executor.
+         */
+        public long getDispatched() {
+            return dispatched;
+        }
+
+        /**
+         * How many runs were skipped because their registration's {@link ConcurrencyPolicy} did not allow them.
+         */
+        public long getSkipped() {
+            return skipped;
+        }
+
+        /**
+         * How many runs have been handed to the executor, or queued behind a run of the same registration, but have
+         * not started yet.
+         */
+        public long getQueued() {
+            return queued;
+        }
+
+        /**
+         * How many runs have started but not finished.
+         */
+        public long getRunning() {
+            return running;
+        }
+
+        /**
+         * How many registrations were removed because their expressions could not fire again.
+         */
+        public long getRetired() {
+            return retired;
+        }
+
+        /**
+         * How many registrations were turned away because their expressions can never fire.
+         */
+        public long getUnsatisfiable() {
+            return unsatisfiable;
+        }
+
+        public long getMatchingTime(TimeUnit unit) {
+            return unit.convert(matching.getSum(), TimeUnit.NANOSECONDS);
+        }
+
+        public long getMaxMatchingTime(TimeUnit unit) {
+            return unit.convert(matching.getMax(), TimeUnit.NANOSECONDS);
+        }
+
+        public long getMaxLateness(TimeUnit unit) {
+            return unit.convert(lateness.getMax(), TimeUnit.NANOSECONDS);
+        }
+
+        /**
+         * Time spent matching expressions, one value per tick of each schedule merged into this snapshot.
+         */
+        public LatencyHistogram.Snapshot getMatchingTimes() {
+            return matching;
+        }
+
+        /**
+         * How late ticks ran after the boundaries they were armed for.
+         */
+        public LatencyHistogram.Snapshot getLateness() {
+            return lateness;
+        }
+
+        /**
+         * Time from the instant a run was scheduled for until it started.
+         */
+        public LatencyHistogram.Snapshot getDispatchLag() {
+            return dispatchLag;
+        }
+
+        /**
+         * Time runs took from starting to finishing.
+         */
+        public LatencyHistogram.Snapshot getDurations() {
+            return duration;
+        }
+
+        @Override
+        public String toString() {
+            return "Snapshot{registrations=" + registrations
+                    + ", ticks=" + ticks
+                    + ", evaluated=" + evaluated
+                    + ", matched=" + matched
+                    + ", dispatched=" + dispatched
+                    + ", skipped=" + skipped
+                    + ", queued=" + queued
+                    + ", running=" + running
+                    + ", retired=" + retired
+                    + ", unsatisfiable=" + unsatisfiable
+                    + ", matching=" + matching
+                    + ", lateness=" + lateness
+                    + ", dispatchLag=" + dispatchLag
+                    + ", durations=" + duration + '}';
+        }
+    }
+
+    private static final class Bean implements ScheduleMetricsMXBean {
+        private final Supplier<Snapshot> metrics;
+
+        private Bean(Supplier<Snapshot> metrics) {
+            this.metrics = metrics;
+        }
+
+        @Override
+        public long getRegistrations() {
+            return metrics.get().getRegistrations();
+        }
+
+        @Override
+        public long getTicks() {
+            return metrics.get().getTicks();
+        }
+
+        @Override
+        public long getEvaluated() {
+            return metrics.get().getEvaluated();
+        }
+
+        @Override
+        public long getMatched() {
+            return metrics.get().getMatched();
+        }
+
+        @Override
+        public long getDispatched() {
+            return metrics.get().getDispatched();
+        }
+
+        @Override
+        public long getSkipped() {
+            return metrics.get().getSkipped();
+        }
+
+        @Override
+        public long getQueued() {
+            return metrics.get().getQueued();
+        }
+
+        @Override
+        public long getRunning() {
+            return metrics.get().getRunning();
+        }
+
+        @Override
+        public long getRetired() {
+            return metrics.get().getRetired();
+        }
+
+        @Override
+        public long getUnsatisfiable() {
+            return metrics.get().getUnsatisfiable();
+        }
+
+        @Override
+        public LatencyHistogram.Snapshot getMatchingTimes() {
+            return metrics.get().getMatchingTimes();
+        }
+
+        @Override
+        public LatencyHistogram.Snapshot getLateness() {
+            return metrics.get().getLateness();
+        }
+
+        @Override
+        public LatencyHistogram.Snapshot getDispatchLag() {
+            return metrics.get().getDispatchLag();
+        }
+
+        @Override
+        public LatencyHistogram.Snapshot getDurations() {
+            return metrics.get().getDurations();
+        }
+    }
+}
@@ -0,0 +1,58 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2013 Anders Wisch
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package cron;
+
+/**
+ * The attributes {@link ScheduleMetrics#registerMBean} publishes over JMX. Histograms show up as composite values
+ * with their count, mean, percentiles and maximum in nanoseconds.
+ */
+public interface ScheduleMetricsMXBean {
+    public long getRegistrations();
+
+    public long getTicks();
+
+    public long getEvaluated();
+
+    public long getMatched();
+
+    public long getDispatched();
+
+    public long getSkipped();
+
+    public long getQueued();
+
+    public long getRunning();
+
+    public long getRetired();
+
+    public long getUnsatisfiable();
+
+    public LatencyHistogram.Snapshot getMatchingTimes();
+
+    public LatencyHistogram.Snapshot getLateness();
+
+    public LatencyHistogram.Snapshot getDispatchLag();
+
+    public LatencyHistogram.Snapshot getDurations();
+}
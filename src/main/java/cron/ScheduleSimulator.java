@@ -0,0 +1,122 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2013 Anders Wisch
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package cron;
+
+import com.google.common.base.Preconditions;
+import com.google.common.collect.Multimap;
+
+import java.time.Instant;
+import java.time.ZoneId;
+import java.time.ZonedDateTime;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+
+/**
+ * Replays a {@link CronSchedule} that runs on a {@link SimulatedClock}, jumping the clock straight from one fire time
+ * to the next instead of ticking through every period in between. Runnables, concurrency policies, metrics, the
+ * journal and fire listeners all behave as they would in real time, so a year of fires can be replayed in seconds,
+ * for example to see how much load a set of registrations puts on an executor.
+ */
+public final class ScheduleSimulator {
+    private static final Comparator<Pending> BY_NEXT = new Comparator<Pending>() {
+        @Override
+        public int compare(Pending a, Pending b) {
+            return a.instant.compareTo(b.instant);
+        }
+    };
+
+    private final CronSchedule schedule;
+    private final SimulatedClock clock;
+
+    public ScheduleSimulator(CronSchedule schedule) {
+        Preconditions.checkArgument(schedule.getClock() instanceof SimulatedClock,
+                "Schedule does not run on a simulated clock: %s", schedule.getClock());
+        Preconditions.checkArgument(!schedule.isStarted(), "Schedule is running in real time");
+        this.schedule = schedule;
+        this.clock = (SimulatedClock) schedule.getClock();
+    }
+
+    /**
+     * Runs every fire after the clock's current time and before the given one, then leaves the clock at the given
+     * time. Registrations are taken as they are when this is called. Returns the number of registration fires.
+     */
+    public long runUntil(Instant end) {
+        ZonedDateTime start = ZonedDateTime.now(clock);
+        PriorityQueue<Pending> queue = new PriorityQueue<>(16, BY_NEXT);
+        for (Map.Entry<ZoneId, Multimap<CronExpression, Registration>> zone : schedule.getRegistrations().entrySet()) {
+            ZonedDateTime local = zone.getKey() == null ? start : start.withZoneSameInstant(zone.getKey());
+            for (Map.Entry<CronExpression, Collection<Registration>> e : zone.getValue().asMap().entrySet()) {
+                Pending pending = new Pending(e.getKey(), e.getValue());
+                if (pending.arm(local))
+                    queue.add(pending);
+            }
+        }
+        long fires = 0;
+        List<Registration> due = new ArrayList<>();
+        List<Pending> fired = new ArrayList<>();
+        while (!queue.isEmpty() && queue.peek().instant.isBefore(end)) {
+            Instant instant = queue.peek().instant;
+            while (!queue.isEmpty() && queue.peek().instant.equals(instant)) {
+                Pending pending = queue.poll();
+                due.addAll(pending.registrations);
+                fired.add(pending);
+            }
+            clock.set(instant);
+            schedule.run(ZonedDateTime.ofInstant(instant, clock.getZone()), due);
+            fires += due.size();
+            for (Pending pending : fired)
+                if (pending.arm(pending.next))
+                    queue.add(pending);
+            due.clear();
+            fired.clear();
+        }
+        if (end.isAfter(clock.instant()))
+            clock.set(end);
+        return fires;
+    }
+
+    private static final class Pending {
+        private final CronExpression expression;
+        private final Collection<Registration> registrations;
+        private ZonedDateTime next;
+        private Instant instant;
+
+        private Pending(CronExpression expression, Collection<Registration> registrations) {
+            this.expression = expression;
+            this.registrations = registrations;
+        }
+
+        private boolean arm(ZonedDateTime after) {
+            next = expression.nextTimeAfter(after);
+            if (next == null)
+                return false;
+            instant = next.toInstant();
+            return true;
+        }
+    }
+}
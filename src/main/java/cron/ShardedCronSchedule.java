@@ -0,0 +1,165 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2013 Anders Wisch
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package cron;
+
+import com.google.common.base.Preconditions;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+
+import java.time.ZonedDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+
+/**
+ * Spreads registrations over several {@link CronSchedule}s by hashing their expressions and runnables. Every partition
+ * has its own registry and ticks on its own thread, so partitions share no locks and the work of matching a tick is
+ * split across as many cores as there are partitions. Registrations of one expression are spread like any others, so
+ * an expression with many runnables does not leave one partition dispatching all of them, at the price of checking
+ * it once in every partition that holds one of its registrations.
+ */
+public class ShardedCronSchedule {
+    private final CronSchedule[] partitions;
+    private final ScheduledExecutorService[] threads;
+
+    /**
+     * Creates a schedule with the given number of partitions that hands matching runnables to the given executor.
+     * A lock-free executor such as {@link WorkerPool} keeps partitions from contending with each other when they
+     * dispatch.
+     */
+    public ShardedCronSchedule(int partitions, Executor runnables, boolean seconds) {
+        Preconditions.checkArgument(partitions > 0, "At least one partition is required");
+        this.partitions = new CronSchedule[partitions];
+        threads = new ScheduledExecutorService[partitions];
+        for (int i = 0; i < partitions; i++) {
+            ThreadFactory factory = new ThreadFactoryBuilder()
+                    .setNameFormat("cron-partition-" + i)
+                    .setDaemon(true)
+                    .build();
+            threads[i] = Executors.newSingleThreadScheduledExecutor(factory);
+            this.partitions[i] = new CronSchedule(threads[i], runnables, seconds);
+        }
+    }
+
+    public int getPartitionCount() {
+        return partitions.length;
+    }
+
+    CronSchedule partition(CronExpression expression, Runnable runnable) {
+        return partitions[Math.floorMod(31 * expression.hashCode() + runnable.hashCode(), partitions.length)];
+    }
+
+    public void add(CronExpression expression, Runnable runnable) {
+        partition(expression, runnable).add(expression, runnable);
+    }
+
+    public void add(Registration registration) {
+        partition(registration.getExpression(), registration.getRunnable()).add(registration);
+    }
+
+    /**
+     * Removes every registration of the expression, from whichever partitions hold them.
+     */
+    public void remove(CronExpression expression) {
+        for (CronSchedule partition : partitions)
+            partition.remove(expression);
+    }
+
+    public void remove(CronExpression expression, Runnable runnable) {
+        partition(expression, runnable).remove(expression, runnable);
+    }
+
+    public void addTickListener(TickListener listener) {
+        for (CronSchedule partition : partitions)
+            partition.addTickListener(listener);
+    }
+
+    public void removeTickListener(TickListener listener) {
+        for (CronSchedule partition : partitions)
+            partition.removeTickListener(listener);
+    }
+
+    /**
+     * Returns the metrics of all partitions merged together.
+     */
+    public ScheduleMetrics.Snapshot getMetrics() {
+        ScheduleMetrics.Snapshot merged = partitions[0].getMetrics();
+        for (int i = 1; i < partitions.length; i++)
+            merged = merged.merge(partitions[i].getMetrics());
+        return merged;
+    }
+
+    public synchronized boolean isStarted() {
+        for (CronSchedule partition : partitions)
+            if (!partition.isStarted())
+                return false;
+        return true;
+    }
+
+    public synchronized void start() {
+        for (CronSchedule partition : partitions)
+            partition.start();
+    }
+
+    /**
+     * Runs every partition against the given time on its own thread and waits for all of them to finish matching.
+     */
+    public void run(final ZonedDateTime time) throws InterruptedException {
+        List<Future<?>> futures = new ArrayList<>(partitions.length);
+        for (int i = 0; i < partitions.length; i++) {
+            final CronSchedule partition = partitions[i];
+            futures.add(threads[i].submit(new Runnable() {
+                @Override
+                public void run() {
+                    partition.run(time);
+                }
+            }));
+        }
+        for (Future<?> future : futures) {
+            try {
+                future.get();
+            } catch (ExecutionException e) {
+                throw new IllegalStateException(e.getCause());
+            }
+        }
+    }
+
+    public synchronized void stop() {
+        for (CronSchedule partition : partitions)
+            partition.stop();
+    }
+
+    /**
+     * Stops ticking and lets the partition threads exit.
+     */
+    public synchronized void shutdown() {
+        stop();
+        for (ScheduledExecutorService thread : threads)
+            thread.shutdown();
+    }
+}
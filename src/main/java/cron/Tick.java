@@ -0,0 +1,87 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2013 Anders Wisch
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package cron;
+
+import java.time.Instant;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * One firing of a {@link Ticker}: the wall-clock boundary it was armed for, how late it actually ran, and whether the
+ * wall clock moved relative to the monotonic clock since the previous tick was armed.
+ */
+public final class Tick {
+    private final Instant time, actualTime;
+    private final long latenessInNanoseconds, clockJumpInMilliseconds;
+    private final boolean clockJump;
+
+    Tick(long timeInMilliseconds, long actualTimeInMilliseconds, long latenessInNanoseconds,
+         long clockJumpInMilliseconds, boolean clockJump) {
+        time = Instant.ofEpochMilli(timeInMilliseconds);
+        actualTime = Instant.ofEpochMilli(actualTimeInMilliseconds);
+        this.latenessInNanoseconds = latenessInNanoseconds;
+        this.clockJumpInMilliseconds = clockJumpInMilliseconds;
+        this.clockJump = clockJump;
+    }
+
+    /**
+     * The period boundary this tick stands for, regardless of when it actually ran.
+     */
+    public Instant getTime() {
+        return time;
+    }
+
+    /**
+     * The wall-clock time at which this tick actually ran.
+     */
+    public Instant getActualTime() {
+        return actualTime;
+    }
+
+    /**
+     * How long after its deadline this tick ran, measured on the monotonic clock.
+     */
+    public long getLateness(TimeUnit unit) {
+        return unit.convert(latenessInNanoseconds, TimeUnit.NANOSECONDS);
+    }
+
+    /**
+     * Wall-clock time elapsed minus monotonic time elapsed since this tick was armed. Positive values mean the wall
+     * clock jumped forward (for example after an NTP step or a suspended VM), negative values mean it went back.
+     */
+    public long getClockJumpInMilliseconds() {
+        return clockJumpInMilliseconds;
+    }
+
+    public boolean isClockJump() {
+        return clockJump;
+    }
+
+    @Override
+    public String toString() {
+        return "Tick{time=" + time
+                + ", actualTime=" + actualTime
+                + ", latenessInNanoseconds=" + latenessInNanoseconds
+                + ", clockJumpInMilliseconds=" + clockJumpInMilliseconds + '}';
+    }
+}
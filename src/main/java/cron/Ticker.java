@@ -0,0 +1,134 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2013 Anders Wisch
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package cron;
+
+import java.time.Clock;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Calls a listener at every wall-clock boundary of a fixed period. Instead of running at a fixed rate, each tick arms
+ * a one-shot task for the next boundary, so scheduling error never accumulates. The monotonic clock is used to
+ * measure lateness and to notice when the wall clock has been stepped between two ticks.
+ */
+class Ticker {
+    static final long CLOCK_JUMP_TOLERANCE_IN_MILLISECONDS = 100;
+
+    private final ScheduledExecutorService executor;
+    private final long periodInMilliseconds;
+    private final TickListener listener;
+    private final Clock clock;
+
+    private ScheduledFuture<?> future;
+    private boolean started;
+    private long boundary, armedAtMilliseconds, armedAtNanoseconds, deadlineInNanoseconds;
+
+    Ticker(ScheduledExecutorService executor, long periodInMilliseconds, TickListener listener) {
+        this(executor, periodInMilliseconds, listener, Clock.systemUTC());
+    }
+
+    /**
+     * Creates a ticker that reads the wall clock from the given clock, while the executor's delays and the monotonic
+     * clock still decide when ticks run.
+     */
+    Ticker(ScheduledExecutorService executor, long periodInMilliseconds, TickListener listener, Clock clock) {
+        this.executor = executor;
+        this.periodInMilliseconds = periodInMilliseconds;
+        this.listener = listener;
+        this.clock = clock;
+    }
+
+    public synchronized boolean isStarted() {
+        return started;
+    }
+
+    public void start() {
+        start(currentTimeMillis(), nanoTime());
+    }
+
+    synchronized void start(long milliseconds, long nanoseconds) {
+        if (!started) {
+            started = true;
+            boundary = Long.MIN_VALUE;
+            arm(milliseconds, nanoseconds);
+        }
+    }
+
+    public synchronized void stop() {
+        started = false;
+        if (future != null) {
+            future.cancel(true);
+            future = null;
+        }
+    }
+
+    void tick() {
+        Tick tick;
+        synchronized (this) {
+            if (!started)
+                return;
+            tick = tick(currentTimeMillis(), nanoTime());
+        }
+        listener.onTick(tick);
+    }
+
+    /**
+     * Describes the tick that is running now and arms the next one.
+     */
+    Tick tick(long milliseconds, long nanoseconds) {
+        long lateness = nanoseconds - deadlineInNanoseconds;
+        long jump = (milliseconds - armedAtMilliseconds) - TimeUnit.NANOSECONDS.toMillis(nanoseconds - armedAtNanoseconds);
+        boolean clockJump = Math.abs(jump) > CLOCK_JUMP_TOLERANCE_IN_MILLISECONDS;
+        Tick tick = new Tick(boundary, milliseconds, lateness, jump, clockJump);
+        arm(milliseconds, nanoseconds);
+        return tick;
+    }
+
+    private void arm(long milliseconds, long nanoseconds) {
+        long next = Math.floorDiv(milliseconds, periodInMilliseconds) * periodInMilliseconds + periodInMilliseconds;
+        // woke up a little before the wall clock reached the boundary
+        if (next == boundary)
+            next += periodInMilliseconds;
+        long delay = next - milliseconds;
+        boundary = next;
+        armedAtMilliseconds = milliseconds;
+        armedAtNanoseconds = nanoseconds;
+        deadlineInNanoseconds = nanoseconds + TimeUnit.MILLISECONDS.toNanos(delay);
+        future = executor.schedule(new Runnable() {
+            @Override
+            public void run() {
+                tick();
+            }
+        }, delay, TimeUnit.MILLISECONDS);
+    }
+
+    long currentTimeMillis() {
+        return clock.millis();
+    }
+
+    long nanoTime() {
+        return System.nanoTime();
+    }
+}
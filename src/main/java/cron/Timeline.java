@@ -0,0 +1,182 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2013 Anders Wisch
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package cron;
+
+import com.google.common.base.Preconditions;
+import com.google.common.collect.ImmutableList;
+
+import java.time.Instant;
+import java.time.ZonedDateTime;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+
+/**
+ * The upcoming fires of many expressions in time order, for example the next thousand fires across all jobs. Each
+ * expression's next time sits in a binary heap keyed by its epoch second, so taking a fire costs one
+ * {@link CronExpression#nextTimeAfter} and a sift of the heap, and nothing past what has been taken is computed. Fires
+ * at the same time come in the order the expressions were given.
+ */
+public final class Timeline implements Iterator<Timeline.Fire> {
+    private final ImmutableList<CronExpression> expressions;
+    private final ZonedDateTime after;
+    // next times by expression index
+    private final ZonedDateTime[] times;
+    private final long[] keys;
+    // expression indices, ordered as a binary heap by key and then index
+    private final int[] heap;
+    private int size = -1;
+
+    private Timeline(Collection<? extends CronExpression> expressions, ZonedDateTime after) {
+        this.expressions = ImmutableList.copyOf(expressions);
+        this.after = Preconditions.checkNotNull(after);
+        times = new ZonedDateTime[this.expressions.size()];
+        keys = new long[times.length];
+        heap = new int[times.length];
+    }
+
+    /**
+     * Returns the fires of the given expressions after the given time, in the time zone of that time.
+     */
+    public static Timeline after(Collection<? extends CronExpression> expressions, ZonedDateTime after) {
+        return new Timeline(expressions, after);
+    }
+
+    @Override
+    public boolean hasNext() {
+        fill();
+        return size > 0;
+    }
+
+    @Override
+    public Fire next() {
+        if (!hasNext())
+            throw new NoSuchElementException();
+        int index = heap[0];
+        ZonedDateTime time = times[index];
+        ZonedDateTime next = expressions.get(index).nextTimeAfter(time);
+        if (next == null) {
+            times[index] = null;
+            heap[0] = heap[--size];
+        } else {
+            times[index] = next;
+            keys[index] = next.toEpochSecond();
+        }
+        siftDown(0);
+        return new Fire(time, expressions.get(index), index);
+    }
+
+    /**
+     * Takes up to the given number of fires.
+     */
+    public List<Fire> take(int limit) {
+        Preconditions.checkArgument(limit >= 0, "Negative limit: %s", limit);
+        List<Fire> fires = new ArrayList<>(Math.min(limit, 1024));
+        while (fires.size() < limit && hasNext())
+            fires.add(next());
+        return fires;
+    }
+
+    /**
+     * Returns the time of the next fire without taking it, or null if there are none.
+     */
+    public ZonedDateTime peek() {
+        return hasNext() ? times[heap[0]] : null;
+    }
+
+    private void fill() {
+        if (size >= 0)
+            return;
+        size = 0;
+        for (int i = 0; i < times.length; i++) {
+            ZonedDateTime next = expressions.get(i).nextTimeAfter(after);
+            if (next != null) {
+                times[i] = next;
+                keys[i] = next.toEpochSecond();
+                heap[size++] = i;
+            }
+        }
+        for (int i = (size >>> 1) - 1; i >= 0; i--)
+            siftDown(i);
+    }
+
+    private void siftDown(int i) {
+        int index = heap[i];
+        for (int child = 2 * i + 1; child < size; child = 2 * i + 1) {
+            if (child + 1 < size && before(heap[child + 1], heap[child]))
+                child++;
+            if (!before(heap[child], index))
+                break;
+            heap[i] = heap[child];
+            i = child;
+        }
+        if (i < size)
+            heap[i] = index;
+    }
+
+    private boolean before(int a, int b) {
+        return keys[a] < keys[b] || keys[a] == keys[b] && a < b;
+    }
+
+    /**
+     * One fire of one of the expressions.
+     */
+    public static final class Fire {
+        private final ZonedDateTime time;
+        private final CronExpression expression;
+        private final int index;
+
+        Fire(ZonedDateTime time, CronExpression expression, int index) {
+            this.time = time;
+            this.expression = expression;
+            this.index = index;
+        }
+
+        public ZonedDateTime getTime() {
+            return time;
+        }
+
+        public Instant getInstant() {
+            return time.toInstant();
+        }
+
+        public CronExpression getExpression() {
+            return expression;
+        }
+
+        /**
+         * The position of the expression in the collection the timeline was created with.
+         */
+        public int getIndex() {
+            return index;
+        }
+
+        @Override
+        public String toString() {
+            return "Fire{time=" + time + ", expression=" + expression + '}';
+        }
+    }
+}
@@ -24,13 +24,16 @@
 package cron;
 
 enum Token {
+    CLOSE_PARENTHESIS,
     END_OF_INPUT,
     FIELD_SEPARATOR,
+    HASH,
     LAST,
     MATCH_ALL,
     MATCH_ONE,
     NTH,
     NUMBER,
+    OPEN_PARENTHESIS,
     RANGE,
     SKIP,
     VALUE_SEPARATOR,
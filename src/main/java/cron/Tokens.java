@@ -23,7 +23,13 @@
  */
 package cron;
 
+import com.google.common.base.Charsets;
+import com.google.common.hash.HashFunction;
+import com.google.common.hash.Hashing;
+
 final class Tokens {
+    private static final HashFunction HASH_FUNCTION = Hashing.murmur3_32();
+
     private int number;
 
     public int number() {
@@ -46,14 +52,34 @@ final class Tokens {
         keywords = null;
     }
 
-    private final String source;
+    private final String source, hashKey;
     private final int length;
-    private int position;
+    private int position, field;
 
     public Tokens(String s) {
+        this(s, null);
+    }
+
+    public Tokens(String s, String hashKey) {
         source = s;
+        this.hashKey = hashKey;
         length = s.length();
         position = 0;
+        field = 0;
+    }
+
+    /**
+     * Returns a non-negative number derived from the hash key and the position of the current field, so that
+     * {@code H} resolves to the same value every time an expression is parsed with the same key.
+     */
+    public int hash() {
+        if (hashKey == null)
+            throw new IllegalArgumentException("'H' requires a hash key in string: " + source);
+        return HASH_FUNCTION.newHasher()
+                .putString(hashKey, Charsets.UTF_8)
+                .putInt(field)
+                .hash()
+                .asInt() & Integer.MAX_VALUE;
     }
 
     public boolean hasNext() {
@@ -75,6 +101,7 @@ final class Tokens {
                     }
                     c = nextChar();
                 } while (isWhitespace(c));
+                field++;
                 return Token.FIELD_SEPARATOR;
             case '0':
             case '1':
@@ -144,6 +171,8 @@ final class Tokens {
                     c = source.charAt(start);
                     if (c == 'L') {
                         return Token.LAST;
+                    } else if (c == 'H') {
+                        return Token.HASH;
                     } else if (c == 'W') {
                         return Token.WEEKDAY;
                     }
@@ -167,6 +196,12 @@ final class Tokens {
             case '#':
                 position++;
                 return Token.NTH;
+            case '(':
+                position++;
+                return Token.OPEN_PARENTHESIS;
+            case ')':
+                position++;
+                return Token.CLOSE_PARENTHESIS;
         }
         throw new IllegalArgumentException(badCharacter(c, position));
     }
@@ -0,0 +1,235 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2013 Anders Wisch
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package cron;
+
+import com.google.common.base.Preconditions;
+
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.time.ZonedDateTime;
+import java.time.temporal.ChronoUnit;
+import java.time.zone.ZoneOffsetTransition;
+import java.time.zone.ZoneRules;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Applies a {@link GapPolicy} and an {@link OverlapPolicy} to another expression. The offset transitions of the zone
+ * last evaluated in are cached a few years ahead, so that ordinary times only cost a binary search instead of a
+ * lookup in the zone's rules.
+ */
+final class TransitionCronExpression extends CronExpression {
+    private static final long WINDOW_IN_SECONDS = 5 * 366 * 24 * 60 * 60L;
+
+    private final CronExpression expression;
+    private final GapPolicy gapPolicy;
+    private final OverlapPolicy overlapPolicy;
+    private volatile Transitions transitions;
+
+    TransitionCronExpression(CronExpression expression, GapPolicy gapPolicy, OverlapPolicy overlapPolicy) {
+        this.expression = Preconditions.checkNotNull(expression);
+        this.gapPolicy = Preconditions.checkNotNull(gapPolicy);
+        this.overlapPolicy = Preconditions.checkNotNull(overlapPolicy);
+    }
+
+    public GapPolicy getGapPolicy() {
+        return gapPolicy;
+    }
+
+    public OverlapPolicy getOverlapPolicy() {
+        return overlapPolicy;
+    }
+
+    @Override
+    public boolean matches(ZonedDateTime t) {
+        if (expression.matches(t))
+            return overlapPolicy == OverlapPolicy.TWICE || !isRepeated(t);
+        if (gapPolicy == GapPolicy.SHIFT) {
+            // a time shifted out of the gap runs at the instant the clocks were put forward
+            ZoneOffsetTransition transition = transitions(t).previous(t.toEpochSecond());
+            return transition != null && transition.isGap() && transition.toEpochSecond() == t.toEpochSecond()
+                    && matchesInGap(transition);
+        }
+        return false;
+    }
+
+    @Override
+    public ZonedDateTime nextTimeAfter(ZonedDateTime after) {
+        ZonedDateTime t = after;
+        for (;;) {
+            ZonedDateTime next = expression.nextTimeAfter(t);
+            if (gapPolicy == GapPolicy.SHIFT) {
+                // every gap before the next match may hold a time to shift, not just the first transition
+                Transitions transitions = transitions(t);
+                for (ZoneOffsetTransition transition = transitions.next(t.toEpochSecond()); transition != null
+                        && (next == null || !next.toInstant().isBefore(transition.getInstant()));
+                        transition = transitions.next(transition.toEpochSecond()))
+                    if (transition.isGap() && matchesInGap(transition))
+                        return ZonedDateTime.ofInstant(transition.getInstant(), t.getZone());
+            }
+            if (next == null || overlapPolicy == OverlapPolicy.TWICE || !isRepeated(next))
+                return next;
+            t = next;
+        }
+    }
+
+    /**
+     * Returns whether the expression matches any of the local times skipped over by the given gap. Those times are
+     * evaluated at the offset before the transition, where they still exist.
+     */
+    private boolean matchesInGap(ZoneOffsetTransition gap) {
+        ZonedDateTime start = gap.getInstant().atZone(gap.getOffsetBefore());
+        if (expression.matches(start))
+            return true;
+        ZonedDateTime next = expression.nextTimeAfter(start);
+        return next != null && next.toEpochSecond() < gap.toEpochSecond() + gap.getDuration().getSeconds();
+    }
+
+    /**
+     * Returns whether the local time of the given time already occurred at the offset before an overlap.
+     */
+    private boolean isRepeated(ZonedDateTime t) {
+        ZoneOffsetTransition transition = transitions(t).previous(t.toEpochSecond());
+        return transition != null && transition.isOverlap()
+                && t.toEpochSecond() < transition.toEpochSecond() - transition.getDuration().getSeconds();
+    }
+
+    private Transitions transitions(ZonedDateTime t) {
+        Transitions transitions = this.transitions;
+        long epochSecond = t.toEpochSecond();
+        if (transitions == null || !transitions.covers(t.getZone(), epochSecond))
+            this.transitions = transitions = Transitions.of(t.getZone(), epochSecond);
+        return transitions;
+    }
+
+    @Override
+    public boolean isSatisfiable() {
+        return expression.isSatisfiable();
+    }
+
+    @Override
+    public LocalDateTime lastPossibleFire() {
+        return expression.lastPossibleFire();
+    }
+
+    @Override
+    int cost() {
+        return expression.cost() + 2;
+    }
+
+    @Override
+    ChronoUnit resolution() {
+        return expression.resolution();
+    }
+
+    @Override
+    public String toString() {
+        return expression.toString();
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (o == null || getClass() != o.getClass()) return false;
+        TransitionCronExpression that = (TransitionCronExpression) o;
+        return expression.equals(that.expression) && gapPolicy == that.gapPolicy && overlapPolicy == that.overlapPolicy;
+    }
+
+    @Override
+    public int hashCode() {
+        int result = expression.hashCode();
+        result = 31 * result + gapPolicy.hashCode();
+        result = 31 * result + overlapPolicy.hashCode();
+        return result;
+    }
+
+    /**
+     * The transitions of one zone around a window of time: the one before the window, if any, those within it, and
+     * the first one after it, if any.
+     */
+    private static final class Transitions {
+        private final ZoneId zone;
+        private final long from, to;
+        private final ZoneOffsetTransition[] transitions;
+        private final long[] epochSeconds;
+
+        private Transitions(ZoneId zone, long from, long to, List<ZoneOffsetTransition> transitions) {
+            this.zone = zone;
+            this.from = from;
+            this.to = to;
+            this.transitions = transitions.toArray(new ZoneOffsetTransition[transitions.size()]);
+            epochSeconds = new long[this.transitions.length];
+            for (int i = 0; i < epochSeconds.length; i++)
+                epochSeconds[i] = this.transitions[i].toEpochSecond();
+        }
+
+        static Transitions of(ZoneId zone, long epochSecond) {
+            ZoneRules rules = zone.getRules();
+            List<ZoneOffsetTransition> transitions = new ArrayList<>();
+            if (rules.isFixedOffset())
+                return new Transitions(zone, Long.MIN_VALUE, Long.MAX_VALUE, transitions);
+            Instant instant = Instant.ofEpochSecond(epochSecond);
+            ZoneOffsetTransition transition = rules.previousTransition(instant.plusSeconds(1));
+            long from = Long.MIN_VALUE, to = Long.MAX_VALUE;
+            if (transition != null) {
+                transitions.add(transition);
+                from = transition.toEpochSecond();
+            }
+            transition = rules.nextTransition(transition == null ? instant : transition.getInstant());
+            while (transition != null) {
+                transitions.add(transition);
+                if (transition.toEpochSecond() > epochSecond + WINDOW_IN_SECONDS) {
+                    to = transition.toEpochSecond();
+                    break;
+                }
+                transition = rules.nextTransition(transition.getInstant());
+            }
+            return new Transitions(zone, from, to, transitions);
+        }
+
+        boolean covers(ZoneId zone, long epochSecond) {
+            return this.zone.equals(zone) && epochSecond >= from && epochSecond < to;
+        }
+
+        /**
+         * Returns the last transition at or before the given time, or null if there is none.
+         */
+        ZoneOffsetTransition previous(long epochSecond) {
+            int i = Arrays.binarySearch(epochSeconds, epochSecond);
+            i = i >= 0 ? i : -i - 2;
+            return i >= 0 ? transitions[i] : null;
+        }
+
+        /**
+         * Returns the first transition after the given time, or null if there is none.
+         */
+        ZoneOffsetTransition next(long epochSecond) {
+            int i = Arrays.binarySearch(epochSeconds, epochSecond);
+            i = i >= 0 ? i + 1 : -i - 1;
+            return i < transitions.length ? transitions[i] : null;
+        }
+    }
+}
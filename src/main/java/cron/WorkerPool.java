@@ -0,0 +1,176 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2013 Anders Wisch
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package cron;
+
+import com.google.common.base.Preconditions;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * A fixed set of worker threads, each with its own lock-free queue. A batch of tasks is split into one chunk per
+ * worker and each chunk is queued with a single insertion, so handing over thousands of tasks that became due at the
+ * same moment costs one queue operation and one wake-up per worker rather than one of each per task. Workers that run
+ * out of work take whole chunks from the other queues.
+ */
+public class WorkerPool implements BatchExecutor {
+    private final Worker[] workers;
+    private final AtomicInteger next;
+    private volatile boolean shutdown;
+
+    public WorkerPool(int threads) {
+        this(threads, new ThreadFactoryBuilder().setNameFormat("cron-worker-%d").setDaemon(true).build());
+    }
+
+    public WorkerPool(int threads, ThreadFactory factory) {
+        Preconditions.checkArgument(threads > 0, "At least one thread is required");
+        workers = new Worker[threads];
+        next = new AtomicInteger();
+        for (int i = 0; i < threads; i++)
+            workers[i] = new Worker(i);
+        for (Worker worker : workers) {
+            worker.thread = factory.newThread(worker);
+            worker.thread.start();
+        }
+    }
+
+    @Override
+    public void execute(Runnable task) {
+        Preconditions.checkNotNull(task);
+        checkNotShutdown();
+        nextWorker().offer(new Runnable[]{task});
+    }
+
+    @Override
+    public void executeAll(List<Runnable> tasks) {
+        checkNotShutdown();
+        int size = tasks.size();
+        if (size == 0)
+            return;
+        int chunks = Math.min(size, workers.length);
+        int first = 0;
+        for (int i = 0; i < chunks; i++) {
+            int last = first + (size - first) / (chunks - i);
+            Runnable[] chunk = tasks.subList(first, last).toArray(new Runnable[last - first]);
+            nextWorker().offer(chunk);
+            first = last;
+        }
+    }
+
+    /**
+     * Stops accepting tasks. Workers exit once every queue is empty.
+     */
+    public void shutdown() {
+        shutdown = true;
+        for (Worker worker : workers)
+            LockSupport.unpark(worker.thread);
+    }
+
+    public boolean isTerminated() {
+        for (Worker worker : workers)
+            if (worker.thread.isAlive())
+                return false;
+        return true;
+    }
+
+    private void checkNotShutdown() {
+        if (shutdown)
+            throw new IllegalStateException("Worker pool has been shut down");
+    }
+
+    private Worker nextWorker() {
+        return workers[Math.floorMod(next.getAndIncrement(), workers.length)];
+    }
+
+    private void wakeIdleWorker() {
+        for (Worker worker : workers) {
+            if (worker.idle) {
+                LockSupport.unpark(worker.thread);
+                return;
+            }
+        }
+    }
+
+    private Runnable[] poll(int index) {
+        Runnable[] chunk = workers[index].queue.poll();
+        for (int i = 1; chunk == null && i < workers.length; i++)
+            chunk = workers[(index + i) % workers.length].queue.poll();
+        return chunk;
+    }
+
+    private final class Worker implements Runnable {
+        private final int index;
+        private final Queue<Runnable[]> queue;
+        private volatile boolean idle;
+        private Thread thread;
+
+        private Worker(int index) {
+            this.index = index;
+            queue = new ConcurrentLinkedQueue<>();
+        }
+
+        private void offer(Runnable[] chunk) {
+            queue.offer(chunk);
+            LockSupport.unpark(thread);
+            // busy, so let an idle worker take the chunk instead
+            if (!idle)
+                wakeIdleWorker();
+        }
+
+        @Override
+        public void run() {
+            while (true) {
+                Runnable[] chunk = poll(index);
+                if (chunk == null) {
+                    if (shutdown)
+                        return;
+                    idle = true;
+                    // a chunk offered just before idle was set may not have woken anyone
+                    chunk = poll(index);
+                    if (chunk == null && !shutdown)
+                        LockSupport.park(this);
+                    idle = false;
+                    if (chunk == null)
+                        continue;
+                }
+                for (Runnable task : chunk)
+                    runTask(task);
+            }
+        }
+
+        private void runTask(Runnable task) {
+            try {
+                task.run();
+            } catch (RuntimeException | Error e) {
+                Thread current = Thread.currentThread();
+                current.getUncaughtExceptionHandler().uncaughtException(current, e);
+            }
+        }
+    }
+}
@@ -0,0 +1,150 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2013 Anders Wisch
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package cron;
+
+import java.util.Arrays;
+
+/**
+ * The optional year field, limited to the years 1970 to 2199 like Quartz. The years are kept as bits in four longs,
+ * so checking a year is a bounds check and a bit test, and the next or previous year in the field a scan of at most
+ * four words. Steps start at the first year of their range, so {@code 2025/2} means every other year from 2025.
+ */
+public class YearField implements TimeField {
+    public static final int MIN = 1970, MAX = 2199;
+
+    private final long[] bits;
+    private final boolean fullRange;
+
+    private YearField(Builder b) {
+        bits = b.bits.clone();
+        fullRange = b.fullRange;
+    }
+
+    public static YearField parse(Tokens s) {
+        return new YearField(new Builder().parse(s));
+    }
+
+    @Override
+    public boolean contains(int year) {
+        if (fullRange)
+            return true;
+        int i = year - MIN;
+        return i >= 0 && year <= MAX && (bits[i >>> 6] & 1L << i) != 0;
+    }
+
+    /**
+     * Returns whether this field was given as {@code *}, in which case it matches every year, even those outside of
+     * 1970 to 2199.
+     */
+    public boolean isFullRange() {
+        return fullRange;
+    }
+
+    /**
+     * Returns the first year in this field at or after the given year, or -1 if there is none.
+     */
+    public int next(int year) {
+        if (fullRange)
+            return year;
+        if (year > MAX)
+            return -1;
+        int i = Math.max(year, MIN) - MIN, word = i >>> 6;
+        long w = bits[word] & -1L << i;
+        while (w == 0) {
+            if (++word == bits.length)
+                return -1;
+            w = bits[word];
+        }
+        return MIN + (word << 6) + Long.numberOfTrailingZeros(w);
+    }
+
+    /**
+     * Returns the last year in this field at or before the given year, or -1 if there is none.
+     */
+    public int previous(int year) {
+        if (fullRange)
+            return year;
+        if (year < MIN)
+            return -1;
+        int i = Math.min(year, MAX) - MIN, word = i >>> 6;
+        long w = bits[word] & -1L >>> (63 - (i & 63));
+        while (w == 0) {
+            if (--word < 0)
+                return -1;
+            w = bits[word];
+        }
+        return MIN + (word << 6) + 63 - Long.numberOfLeadingZeros(w);
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (o == null || getClass() != o.getClass()) return false;
+        YearField that = (YearField) o;
+        return fullRange == that.fullRange && Arrays.equals(bits, that.bits);
+    }
+
+    @Override
+    public int hashCode() {
+        return 31 * Arrays.hashCode(bits) + (fullRange ? 1 : 0);
+    }
+
+    private static final class Builder extends DefaultField.Builder {
+        private final long[] bits;
+        private boolean fullRange;
+
+        private Builder() {
+            super(MIN, MAX);
+            bits = new long[(MAX - MIN + 64) >>> 6];
+        }
+
+        @Override
+        protected Builder parse(Tokens tokens) {
+            super.parse(tokens);
+            return this;
+        }
+
+        @Override
+        protected void rangeSkip(int first, int last, int skip) {
+            for (int i = first; i <= last; i += skip)
+                add(i);
+        }
+
+        @Override
+        protected void range(int first, int last) {
+            if (first == MIN && last == MAX)
+                fullRange = true;
+            for (int i = first; i <= last; i++)
+                add(i);
+        }
+
+        @Override
+        protected void add(int year) {
+            if (year < MIN || year > MAX)
+                throw new IllegalArgumentException("Year must be from " + MIN + " to " + MAX + ": " + year);
+            int i = year - MIN;
+            bits[i >>> 6] |= 1L << i;
+        }
+    }
+}
@@ -0,0 +1,314 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2013 Anders Wisch
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package cron;
+
+import com.google.common.collect.ConcurrentHashMultiset;
+import com.google.common.collect.ImmutableSet;
+import com.google.common.collect.Multiset;
+import com.google.common.collect.Sets;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.IOException;
+import java.time.Clock;
+import java.time.Instant;
+import java.time.ZoneId;
+import java.time.ZoneOffset;
+import java.time.ZonedDateTime;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class ClusteredCronScheduleTest {
+    private static final int PARTITIONS = 32;
+    private static final Executor DIRECT = new Executor() {
+        @Override
+        public void execute(Runnable command) {
+            command.run();
+        }
+    };
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private MutableClock clock;
+    private LeaseStore leases;
+    private ScheduledExecutorService executor;
+    private List<ClusteredCronSchedule> nodes;
+
+    @Before
+    public void before() {
+        clock = new MutableClock();
+        leases = new InMemoryLeaseStore(clock);
+        executor = Executors.newSingleThreadScheduledExecutor();
+        nodes = new ArrayList<>();
+    }
+
+    @Test
+    public void nodesOwnDisjointPartitionsThatCoverEverything() {
+        node("a");
+        node("b");
+        node("c");
+        rebalanceAll();
+        assertDisjointAndComplete();
+        for (ClusteredCronSchedule node : nodes)
+            assertTrue(node.getOwnedPartitions().size() > 0);
+    }
+
+    @Test
+    public void joiningMovesFewPartitions() {
+        node("a");
+        node("b");
+        node("c");
+        rebalanceAll();
+        List<Set<Integer>> before = owned();
+        ClusteredCronSchedule d = node("d");
+        // the newcomer can only take partitions the others have let go of
+        d.rebalance();
+        rebalanceAll();
+        assertDisjointAndComplete();
+        int moved = 0;
+        for (int i = 0; i < 3; i++)
+            moved += Sets.difference(before.get(i), nodes.get(i).getOwnedPartitions()).size();
+        assertEquals(d.getOwnedPartitions().size(), moved);
+        assertTrue(moved < PARTITIONS / 2);
+    }
+
+    @Test
+    public void partitionsAreTakenOverWhenANodeStops() {
+        ClusteredCronSchedule a = node("a");
+        ClusteredCronSchedule b = node("b");
+        rebalanceAll();
+        a.stop();
+        b.rebalance();
+        assertEquals(PARTITIONS, b.getOwnedPartitions().size());
+    }
+
+    @Test
+    public void partitionsAreTakenOverWhenALeaseExpires() {
+        node("a");
+        ClusteredCronSchedule b = node("b");
+        rebalanceAll();
+        // a has gone away without releasing anything
+        clock.advance(TimeUnit.SECONDS.toMillis(31));
+        b.rebalance();
+        assertEquals(PARTITIONS, b.getOwnedPartitions().size());
+    }
+
+    @Test
+    public void everyRegistrationRunsOnExactlyOneNode() {
+        final Multiset<Integer> counts = ConcurrentHashMultiset.create();
+        node("a");
+        node("b");
+        node("c");
+        rebalanceAll();
+        for (int minute = 0; minute < 60; minute++) {
+            final int key = minute;
+            for (ClusteredCronSchedule node : nodes) {
+                node.add(CronExpression.parse(minute + " * * * *"), new Runnable() {
+                    @Override
+                    public void run() {
+                        counts.add(key);
+                    }
+                });
+            }
+        }
+        ZonedDateTime time = ZonedDateTime.now().truncatedTo(ChronoUnit.HOURS);
+        for (int minute = 0; minute < 60; minute++)
+            for (ClusteredCronSchedule node : nodes)
+                node.run(time.withMinute(minute));
+        for (int minute = 0; minute < 60; minute++)
+            assertEquals(1, counts.count(minute));
+    }
+
+    @Test
+    public void partitionTakenBackDoesNotCatchUpOnTheOtherNodesRuns() {
+        ClusteredCronSchedule a = node("a");
+        ClusteredCronSchedule b = node("b");
+        final Multiset<String> counts = ConcurrentHashMultiset.create();
+        for (final ClusteredCronSchedule node : nodes) {
+            node.add(Registration.builder(CronExpression.parse("* * * * *"), new Runnable() {
+                @Override
+                public void run() {
+                    counts.add(node == nodes.get(0) ? "a" : "b");
+                }
+            }).withMisfirePolicy(MisfirePolicy.FIRE_ALL).build());
+        }
+        a.rebalance();
+        a.run(tick(0));
+        b.rebalance();
+        a.stop();
+        b.rebalance();
+        for (int minute = 1; minute < 10; minute++)
+            b.run(tick(minute));
+        b.stop();
+        a.rebalance();
+        assertEquals(PARTITIONS, a.getOwnedPartitions().size());
+        a.run(tick(10));
+        assertEquals(2, counts.count("a"));
+        assertEquals(9, counts.count("b"));
+        a.run(tick(13));
+        assertEquals(5, counts.count("a"));
+    }
+
+    @Test
+    public void nodeIdsNeedNotBeFileNames() throws IOException {
+        leases = new FileLeaseStore(folder.newFolder().toPath(), clock);
+        node("host:8080");
+        node("[::1]:8080");
+        rebalanceAll();
+        assertDisjointAndComplete();
+        assertEquals(ImmutableSet.of("host:8080", "[::1]:8080"),
+                ImmutableSet.copyOf(leases.owners("member-").values()));
+    }
+
+    @Test
+    public void heartbeatKeepsGoingAfterTheLeaseStoreFails() throws InterruptedException {
+        final AtomicInteger rounds = new AtomicInteger();
+        final CountDownLatch recovered = new CountDownLatch(2);
+        LeaseStore failingOnce = new InMemoryLeaseStore(clock) {
+            @Override
+            public synchronized Map<String, String> owners(String prefix) {
+                // the first round is start's own, the second the first heartbeat
+                if (rounds.incrementAndGet() == 2)
+                    throw new IllegalStateException("Lease store unavailable");
+                recovered.countDown();
+                return super.owners(prefix);
+            }
+        };
+        final List<Throwable> reported = new CopyOnWriteArrayList<>();
+        ScheduledExecutorService heartbeats = Executors.newSingleThreadScheduledExecutor(new ThreadFactory() {
+            @Override
+            public Thread newThread(Runnable r) {
+                Thread thread = new Thread(r);
+                thread.setUncaughtExceptionHandler(new Thread.UncaughtExceptionHandler() {
+                    @Override
+                    public void uncaughtException(Thread t, Throwable e) {
+                        reported.add(e);
+                    }
+                });
+                return thread;
+            }
+        });
+        try {
+            ClusteredCronSchedule node = ClusteredCronSchedule.builder("a", failingOnce, heartbeats)
+                    .withLeaseDuration(30, TimeUnit.MILLISECONDS)
+                    .build();
+            nodes.add(node);
+            node.start();
+            assertTrue(recovered.await(10, TimeUnit.SECONDS));
+            assertTrue(rounds.get() > 2);
+            assertEquals(1, reported.size());
+            assertTrue(reported.get(0) instanceof IllegalStateException);
+        } finally {
+            heartbeats.shutdownNow();
+        }
+    }
+
+    private static Tick tick(int minute) {
+        long time = TimeUnit.MINUTES.toMillis(minute);
+        return new Tick(time, time, 0, 0, false);
+    }
+
+    private ClusteredCronSchedule node(String name) {
+        ClusteredCronSchedule node = ClusteredCronSchedule.builder(name, leases, executor)
+                .withRunnables(DIRECT)
+                .withPartitions(PARTITIONS)
+                .build();
+        nodes.add(node);
+        return node;
+    }
+
+    private void rebalanceAll() {
+        // the first round lets every node see the others, the second lets them act on it
+        for (int round = 0; round < 2; round++)
+            for (ClusteredCronSchedule node : nodes)
+                node.rebalance();
+    }
+
+    private List<Set<Integer>> owned() {
+        List<Set<Integer>> owned = new ArrayList<>();
+        for (ClusteredCronSchedule node : nodes)
+            owned.add(node.getOwnedPartitions());
+        return owned;
+    }
+
+    private void assertDisjointAndComplete() {
+        Set<Integer> all = new HashSet<>();
+        int total = 0;
+        for (ClusteredCronSchedule node : nodes) {
+            all.addAll(node.getOwnedPartitions());
+            total += node.getOwnedPartitions().size();
+        }
+        assertEquals(PARTITIONS, all.size());
+        assertEquals(PARTITIONS, total);
+    }
+
+    @After
+    public void after() {
+        for (ClusteredCronSchedule node : nodes)
+            node.stop();
+        executor.shutdownNow();
+    }
+
+    static class MutableClock extends Clock {
+        private volatile long millis = System.currentTimeMillis();
+
+        void advance(long milliseconds) {
+            millis += milliseconds;
+        }
+
+        @Override
+        public ZoneId getZone() {
+            return ZoneOffset.UTC;
+        }
+
+        @Override
+        public Clock withZone(ZoneId zone) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public Instant instant() {
+            return Instant.ofEpochMilli(millis);
+        }
+    }
+}
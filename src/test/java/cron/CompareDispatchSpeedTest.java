@@ -0,0 +1,102 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2013 Anders Wisch
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package cron;
+
+import com.google.common.base.Stopwatch;
+import org.junit.Test;
+
+import java.time.ZonedDateTime;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Measures the time from a tick to the start of the last of 10,000 runnables that all match it.
+ */
+public class CompareDispatchSpeedTest {
+    private static final int FIRES = 10000, THREADS = 4, TRIALS = 20;
+
+    @Test
+    public void scheduledExecutor() throws Exception {
+        ScheduledExecutorService executor = Executors.newScheduledThreadPool(THREADS);
+        try {
+            check("ScheduledThreadPoolExecutor", executor, executor);
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    @Test
+    public void threadPoolExecutor() throws Exception {
+        ScheduledExecutorService ticks = Executors.newSingleThreadScheduledExecutor();
+        ExecutorService executor = Executors.newFixedThreadPool(THREADS);
+        try {
+            check("ThreadPoolExecutor", ticks, executor);
+        } finally {
+            executor.shutdownNow();
+            ticks.shutdownNow();
+        }
+    }
+
+    @Test
+    public void workerPool() throws Exception {
+        ScheduledExecutorService ticks = Executors.newSingleThreadScheduledExecutor();
+        WorkerPool pool = new WorkerPool(THREADS);
+        try {
+            check("WorkerPool", ticks, pool);
+        } finally {
+            pool.shutdown();
+            ticks.shutdownNow();
+        }
+    }
+
+    private void check(String name, ScheduledExecutorService ticks, Executor runnables) throws Exception {
+        CronSchedule schedule = new CronSchedule(ticks, runnables, false);
+        CronExpression expression = CronExpression.parse("0 * * * *");
+        final CountDownLatch[] latch = new CountDownLatch[1];
+        for (int i = 0; i < FIRES; i++) {
+            schedule.add(expression, new Runnable() {
+                @Override
+                public void run() {
+                    latch[0].countDown();
+                }
+            });
+        }
+        ZonedDateTime time = ZonedDateTime.now().withMinute(0);
+        long best = Long.MAX_VALUE;
+        for (int i = 0; i < TRIALS; i++) {
+            latch[0] = new CountDownLatch(FIRES);
+            Stopwatch clock = Stopwatch.createStarted();
+            schedule.run(time);
+            assertTrue(latch[0].await(10, TimeUnit.SECONDS));
+            best = Math.min(best, clock.elapsed(TimeUnit.NANOSECONDS));
+        }
+        System.out.printf("%-30s tick to last of %d runnables started %8.2fms\n", name, FIRES, best / 1000000d);
+    }
+}
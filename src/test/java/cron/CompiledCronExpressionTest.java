@@ -0,0 +1,102 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2013 Anders Wisch
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package cron;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.time.ZoneId;
+import java.time.ZonedDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Executor;
+
+import org.junit.Test;
+
+public class CompiledCronExpressionTest {
+    private static final ZoneId zone = ZoneId.of("America/New_York");
+
+    @Test
+    public void matchesLikeExpression() {
+        CronExpression expression = CronExpression.parse("*/15 1-3,9-17 * * 0-5");
+        CronExpression compiled = expression.compile(zone, new DirectExecutor());
+        ZonedDateTime t = ZonedDateTime.of(2024, 3, 9, 0, 0, 0, 0, zone);
+        for (int i = 0; i < 3 * 24 * 60; i++, t = t.plusMinutes(1))
+            assertEquals(t.toString(), expression.matches(t), compiled.matches(t));
+    }
+
+    @Test
+    public void findsNextTimesAcrossYears() {
+        CronExpression expression = CronExpression.parse("0 9 L * *");
+        CronExpression compiled = expression.compile(zone, new DirectExecutor());
+        ZonedDateTime expected = ZonedDateTime.of(2024, 10, 1, 0, 0, 0, 0, zone), actual = expected;
+        for (int i = 0; i < 30; i++) {
+            expected = expression.nextTimeAfter(expected);
+            actual = compiled.nextTimeAfter(actual);
+            assertEquals(expected, actual);
+        }
+        ZonedDateTime utc = ZonedDateTime.of(2024, 10, 1, 0, 0, 0, 0, ZoneId.of("UTC"));
+        assertEquals(expression.nextTimeAfter(utc), compiled.nextTimeAfter(utc));
+    }
+
+    @Test
+    public void rendersNextYearInBackground() {
+        QueueExecutor executor = new QueueExecutor();
+        CronExpression compiled = CronExpression.parse("0 0 1 1 *").compile(zone, executor);
+        ZonedDateTime newYear = ZonedDateTime.of(2025, 1, 1, 0, 0, 0, 0, zone);
+        assertTrue(compiled.matches(newYear.minusYears(1)));
+        assertEquals(1, executor.tasks.size());
+        executor.tasks.remove(0).run();
+        assertTrue(compiled.matches(newYear));
+        assertEquals(1, executor.tasks.size());
+        // not run yet, so rendered when needed
+        assertEquals(newYear.plusYears(1), compiled.nextTimeAfter(newYear));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void rejectsSeconds() {
+        CronExpression.parser().withSecondsField(true).parse("*/10 * * * * *").compile(zone);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void rejectsReboot() {
+        CronExpression.parse("@reboot").compile(zone);
+    }
+
+    private static class DirectExecutor implements Executor {
+        @Override
+        public void execute(Runnable command) {
+            command.run();
+        }
+    }
+
+    private static class QueueExecutor implements Executor {
+        final List<Runnable> tasks = new ArrayList<>();
+
+        @Override
+        public void execute(Runnable command) {
+            tasks.add(command);
+        }
+    }
+}
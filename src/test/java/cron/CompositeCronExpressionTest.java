@@ -0,0 +1,113 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2013 Anders Wisch
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package cron;
+
+import static cron.CronExpression.and;
+import static cron.CronExpression.not;
+import static cron.CronExpression.or;
+import static cron.CronExpression.parse;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.time.ZoneOffset;
+import java.time.ZonedDateTime;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.Test;
+
+public class CompositeCronExpressionTest {
+    private static final ZonedDateTime start = ZonedDateTime.of(2024, 1, 1, 0, 0, 0, 0, ZoneOffset.UTC);
+
+    @Test
+    public void excludesFirstMonday() {
+        CronExpression workHours = parse("*/15 9-17 * * 1-5"), firstMonday = parse("* * 1-7 * 1");
+        CronExpression expression = and(workHours, not(firstMonday));
+        assertFalse(expression.matches(start.withHour(9)));
+        assertTrue(expression.matches(start.withDayOfMonth(2).withHour(9)));
+        assertNextTimesMatchScan(expression, start, start.plusMonths(3));
+    }
+
+    @Test
+    public void mergesNextTimes() {
+        CronExpression expression = or(parse("0 9 * * 1"), parse("30 17 * * 5"), parse("0 0 1 * *"));
+        ZonedDateTime t = expression.nextTimeAfter(start.minusMinutes(1));
+        assertEquals(start, t);
+        t = expression.nextTimeAfter(t);
+        assertEquals(start.withHour(9), t);
+        t = expression.nextTimeAfter(t);
+        assertEquals(start.withDayOfMonth(5).withHour(17).withMinute(30), t);
+        assertNextTimesMatchScan(expression, start, start.plusMonths(3));
+    }
+
+    @Test
+    public void findsComplement() {
+        CronExpression expression = not(parse("* 0-22 * * *"));
+        assertEquals(start.withHour(23), expression.nextTimeAfter(start));
+        assertEquals(start.withHour(23).withMinute(1), expression.nextTimeAfter(start.withHour(23)));
+        assertNull(not(parse("* * * * *")).nextTimeAfter(start));
+    }
+
+    @Test
+    public void nestsComposites() {
+        CronExpression expression = and(or(parse("0 9 * * *"), parse("0 17 * * *")), not(parse("* * * * 0,6")));
+        assertNextTimesMatchScan(expression, start, start.plusMonths(1));
+        assertEquals("(0 9 * * *) | (0 17 * * *)", or(parse("0 9 * * *"), parse("0 17 * * *")).toString());
+        assertEquals("!(* * * * 0,6)", not(parse("* * * * 0,6")).toString());
+    }
+
+    @Test
+    public void triesCheapestFirst() {
+        CountingCronExpression expensive = new CountingCronExpression();
+        assertFalse(and(expensive, parse("0 0 1 1 *")).matches(start.withHour(1)));
+        assertTrue(or(expensive, parse("* * * * *")).matches(start));
+        assertEquals(0, expensive.count.get());
+        assertTrue(and(expensive, parse("* * * * *")).matches(start));
+        assertEquals(1, expensive.count.get());
+    }
+
+    private static void assertNextTimesMatchScan(CronExpression expression, ZonedDateTime from, ZonedDateTime to) {
+        ZonedDateTime expected = from, actual = from;
+        for (;;) {
+            do {
+                expected = expected.plusMinutes(1);
+            } while (expected.isBefore(to) && !expression.matches(expected));
+            if (!expected.isBefore(to))
+                break;
+            actual = expression.nextTimeAfter(actual);
+            assertEquals(expected, actual);
+        }
+    }
+
+    private static class CountingCronExpression extends CronExpression {
+        final AtomicInteger count = new AtomicInteger();
+
+        @Override
+        public boolean matches(ZonedDateTime t) {
+            count.incrementAndGet();
+            return true;
+        }
+    }
+}
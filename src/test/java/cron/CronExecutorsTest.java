@@ -0,0 +1,161 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2013 Anders Wisch
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package cron;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.time.ZonedDateTime;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class CronExecutorsTest {
+    private static final CronExpression EVERY_SECOND = CronExpression.parser()
+            .withSecondsField(true)
+            .parse("* * * * * *");
+
+    private ScheduledExecutorService delegate;
+    private CronScheduledExecutorService executor;
+
+    @Before
+    public void before() {
+        delegate = Executors.newScheduledThreadPool(1);
+        executor = CronExecutors.wrap(delegate);
+    }
+
+    @Test
+    public void runsAtEveryFire() throws Exception {
+        final AtomicInteger runs = new AtomicInteger();
+        ScheduledFuture<?> future = executor.schedule(EVERY_SECOND, new Runnable() {
+            @Override
+            public void run() {
+                runs.incrementAndGet();
+            }
+        });
+        long delay = future.getDelay(TimeUnit.MILLISECONDS);
+        assertTrue(delay >= 0 && delay <= 1000);
+        Thread.sleep(2500);
+        assertTrue(runs.get() >= 2);
+        assertTrue(future.getDelay(TimeUnit.MILLISECONDS) <= 1000);
+        assertFalse(future.isDone());
+
+        assertTrue(future.cancel(false));
+        int cancelledAt = runs.get();
+        Thread.sleep(1500);
+        assertEquals(cancelledAt, runs.get());
+    }
+
+    @Test
+    public void nextRunIsArmedFromNextMatch() {
+        ScheduledFuture<?> future = executor.schedule(CronExpression.parse("0 0 1 1 *"), new Runnable() {
+            @Override
+            public void run() {
+            }
+        });
+        ZonedDateTime newYear = CronExpression.parse("0 0 1 1 *").nextTimeAfter(ZonedDateTime.now());
+        long expected = newYear.toInstant().toEpochMilli() - System.currentTimeMillis();
+        assertEquals(expected, future.getDelay(TimeUnit.MILLISECONDS), 1000);
+        future.cancel(false);
+    }
+
+    @Test
+    public void failsWhenCallableThrows() throws Exception {
+        ScheduledFuture<Object> future = executor.schedule(EVERY_SECOND, new Callable<Object>() {
+            @Override
+            public Object call() throws Exception {
+                throw new IllegalStateException("boom");
+            }
+        });
+        try {
+            future.get(3, TimeUnit.SECONDS);
+            fail();
+        } catch (ExecutionException e) {
+            assertTrue(e.getCause() instanceof IllegalStateException);
+        }
+    }
+
+    @Test
+    public void completesWhenExpressionNeverMatchesAgain() throws Exception {
+        ScheduledFuture<String> future = executor.schedule(new CronExpression() {
+            @Override
+            public boolean matches(ZonedDateTime t) {
+                return false;
+            }
+
+            @Override
+            public ZonedDateTime nextTimeAfter(ZonedDateTime t) {
+                return null;
+            }
+        }, new Callable<String>() {
+            @Override
+            public String call() throws Exception {
+                return "never";
+            }
+        });
+        assertTrue(future.isDone());
+        assertNull(future.get());
+    }
+
+    @Test
+    public void stopsOnShutdown() throws Exception {
+        ScheduledFuture<?> future = executor.schedule(EVERY_SECOND, new Runnable() {
+            @Override
+            public void run() {
+            }
+        });
+        executor.shutdownNow();
+        assertTrue(executor.awaitTermination(1, TimeUnit.SECONDS));
+        assertTrue(delegate.isShutdown());
+        future.cancel(false);
+        try {
+            future.get();
+            fail();
+        } catch (CancellationException expected) {
+        }
+    }
+
+    @Test
+    public void wrapsOnce() {
+        assertSame(executor, CronExecutors.wrap(executor));
+    }
+
+    @After
+    public void after() {
+        delegate.shutdownNow();
+    }
+}
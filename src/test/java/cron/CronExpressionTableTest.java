@@ -0,0 +1,97 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2013 Anders Wisch
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package cron;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.time.ZoneId;
+import java.time.ZoneOffset;
+import java.time.ZonedDateTime;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.Test;
+
+public class CronExpressionTableTest {
+    private static final String[] STRINGS = {
+            "* * * * *", "*/7 * * * *", "0 */2 * * *", "*/15 9-17 * * 1-5", "30 12 L * *", "0 0 15W * ?",
+            "0 9 ? * 5#3", "0 9 ? * 5L", "0 0 1 1 * */2", "0 0 * * * 2024", "0 12 15 2,8 *", "59 23 31 * *"
+    };
+
+    @Test
+    public void matchesLikeEachExpression() {
+        List<CronExpression> expressions = new ArrayList<>();
+        for (int i = 0; i < 10; i++)
+            for (String s : STRINGS)
+                expressions.add(CronExpression.parse(s));
+        expressions.add(CronExpressionTest.withSecondsField.parse("*/10 * * * * *"));
+        expressions.add(CronExpression.and(CronExpression.parse("0 * * * *"), CronExpression.parse("* * 1 * *")));
+        CronExpressionTable table = CronExpressionTable.builder().addAll(expressions).build();
+        assertEquals(expressions.size(), table.size());
+        Random random = new Random(1);
+        ZoneId zone = ZoneId.of("Europe/London");
+        ZonedDateTime start = ZonedDateTime.of(2024, 1, 1, 0, 0, 0, 0, zone);
+        for (int i = 0; i < 20000; i++) {
+            ZonedDateTime t = start.plusMinutes(random.nextInt(60 * 24 * 366 * 2)).plusSeconds(random.nextInt(6) * 10);
+            BitSet expected = new BitSet();
+            for (int id = 0; id < expressions.size(); id++)
+                if (expressions.get(id).matches(t))
+                    expected.set(id);
+            assertEquals(t.toString(), expected, table.matching(t));
+        }
+    }
+
+    @Test
+    public void matchesOnSpecialDays() {
+        CronExpressionTable table = CronExpressionTable.builder()
+                .add(CronExpression.parse("30 12 L * *"))
+                .add(CronExpression.parse("30 12 * * *"))
+                .add(CronExpression.parse("30 12 ? * 5#3"))
+                .add(CronExpression.parse("30 12 * * * 2025"))
+                .build();
+        ZonedDateTime lastOfFebruary = ZonedDateTime.of(2024, 2, 29, 12, 30, 0, 0, ZoneOffset.UTC);
+        assertEquals(bits(0, 1), table.matching(lastOfFebruary));
+        assertEquals(bits(1), table.matching(lastOfFebruary.minusDays(1)));
+        assertEquals(bits(1, 2), table.matching(ZonedDateTime.of(2024, 2, 16, 12, 30, 0, 0, ZoneOffset.UTC)));
+        assertEquals(bits(1, 3), table.matching(lastOfFebruary.plusYears(1).minusDays(1)));
+        assertEquals(bits(), table.matching(lastOfFebruary.plusMinutes(1)));
+    }
+
+    @Test
+    public void emptyTable() {
+        CronExpressionTable table = CronExpressionTable.builder().build();
+        assertEquals(0, table.size());
+        assertTrue(table.matching(ZonedDateTime.now()).isEmpty());
+    }
+
+    private static BitSet bits(int... ids) {
+        BitSet bits = new BitSet();
+        for (int id : ids)
+            bits.set(id);
+        return bits;
+    }
+}
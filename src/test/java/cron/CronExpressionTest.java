@@ -30,16 +30,22 @@ import static cron.DateTimes.nthOfMonth;
 import static cron.DateTimes.startOfHour;
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
 import static org.junit.Assert.assertTrue;
 import static org.junit.Assert.fail;
 
 import java.time.DayOfWeek;
+import java.time.Duration;
+import java.time.LocalDateTime;
 import java.time.Month;
+import java.time.ZoneId;
+import java.time.ZoneOffset;
 import java.time.ZonedDateTime;
 import java.time.format.DateTimeFormatter;
 import java.time.temporal.ChronoUnit;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import org.junit.Test;
 
@@ -318,6 +324,70 @@ public class CronExpressionTest {
         assertFalse(CronExpression.parser().allowBothDayFields(false).isValid("0 0 1 * 1"));
     }
 
+    @Test
+    public void nextTimeAfter() {
+        ZonedDateTime time = ZonedDateTime.of(2013, 1, 31, 10, 15, 30, 0, ZoneOffset.UTC);
+        assertEquals(time.withSecond(0).plusMinutes(1), CronExpression.parse("* * * * *").nextTimeAfter(time));
+        assertEquals(time.plusSeconds(1), withSecondsField.parse("* * * * * *").nextTimeAfter(time));
+        assertEquals(
+                ZonedDateTime.of(2013, 2, 1, 0, 0, 0, 0, ZoneOffset.UTC),
+                CronExpression.monthly().nextTimeAfter(time));
+        assertEquals(
+                ZonedDateTime.of(2013, 2, 28, 10, 15, 0, 0, ZoneOffset.UTC),
+                CronExpression.parse("15 10 L * ?").nextTimeAfter(time));
+        assertEquals(
+                ZonedDateTime.of(2013, 2, 15, 10, 15, 0, 0, ZoneOffset.UTC),
+                CronExpression.parse("15 10 ? * 5#3").nextTimeAfter(time));
+        assertEquals(
+                ZonedDateTime.of(2016, 2, 29, 0, 0, 0, 0, ZoneOffset.UTC),
+                CronExpression.parse("0 0 29 2 *").nextTimeAfter(time));
+    }
+
+    @Test
+    public void nextTimeAfterIsAfter() {
+        ZonedDateTime time = ZonedDateTime.of(2013, 1, 1, 0, 0, 0, 0, ZoneOffset.UTC);
+        assertEquals(time.plusYears(1), CronExpression.yearly().nextTimeAfter(time));
+    }
+
+    @Test
+    public void nextTimeAfterAcrossDaylightSavingTime() {
+        ZonedDateTime time = ZonedDateTime.of(2013, 3, 10, 0, 0, 0, 0, ZoneId.of("America/New_York"));
+        assertEquals(
+                ZonedDateTime.of(2013, 3, 10, 3, 0, 0, 0, ZoneId.of("America/New_York")),
+                CronExpression.parse("0 * * * *").nextTimeAfter(time.plusHours(1)));
+        assertEquals(
+                ZonedDateTime.of(2013, 3, 11, 2, 30, 0, 0, ZoneId.of("America/New_York")),
+                CronExpression.parse("30 2 * * *").nextTimeAfter(time));
+    }
+
+    @Test
+    public void nextTimeAfterNever() {
+        ZonedDateTime time = ZonedDateTime.of(2013, 1, 1, 0, 0, 0, 0, ZoneOffset.UTC);
+        assertNull(CronExpression.parse("0 0 30 2 *").nextTimeAfter(time));
+        assertNull(withSecondsField.parse("0 0 0 1 1 ? 2002-2010").nextTimeAfter(time));
+        assertNull(CronExpression.parse("@reboot").nextTimeAfter(time));
+    }
+
+    @Test
+    public void hashSpreadsKeysEvenly() {
+        int keys = 6000;
+        int[] minutes = new int[60];
+        ZonedDateTime hour = ZonedDateTime.of(2013, 1, 1, 0, 0, 0, 0, ZoneOffset.UTC);
+        for (int i = 0; i < keys; i++) {
+            CronExpression hashed = CronExpression.parser().withHashKey("tenant-" + i).parse("H * * * *");
+            minutes[hashed.nextTimeAfter(hour.minusNanos(1)).getMinute()]++;
+        }
+        for (int count : minutes)
+            assertTrue("Uneven spread: " + count, count > keys / 60 / 2 && count < keys / 60 * 2);
+    }
+
+    @Test
+    public void hashIsStable() {
+        CronExpression.Parser parser = CronExpression.parser().withHashKey("tenant-42");
+        assertEquals(parser.parse("H H * * *"), parser.parse("H H * * *"));
+        assertFalse(CronExpression.isValid("H * * * *"));
+    }
+
     private void assertWeekly() {
         for (int week = 1; week <= 52; week++) {
             assertMatches(midnight().withDayOfYear(7 * week).with(DayOfWeek.MONDAY).minusDays(1));
@@ -336,6 +406,51 @@ public class CronExpressionTest {
         }
     }
 
+    @Test
+    public void intersectsFields() {
+        CronExpression workHours = CronExpression.parse("*/15 9-17 * * 1-5");
+        CronExpression everyOtherHour = CronExpression.parse("0 */2 * * *");
+        assertEquals("0 10,12,14,16 * * 1,2,3,4,5", workHours.intersect(everyOtherHour).toString());
+        ZonedDateTime monday = ZonedDateTime.of(2024, 1, 1, 0, 0, 0, 0, ZoneOffset.UTC);
+        assertEquals(monday.withHour(10), CronExpression.firstCoincidence(workHours, everyOtherHour, monday));
+    }
+
+    @Test
+    public void intersectsSecondsWithMinutes() {
+        CronExpression seconds = withSecondsField.parse("30 * * * * *"), minutes = CronExpression.parse("0 12 * * *");
+        assertEquals("30 0 12 * * *", seconds.intersect(minutes).toString());
+        ZonedDateTime midnight = ZonedDateTime.of(2024, 1, 1, 0, 0, 0, 0, ZoneOffset.UTC);
+        assertEquals(midnight.withHour(12).withSecond(30), CronExpression.firstCoincidence(minutes, seconds, midnight));
+    }
+
+    @Test
+    public void disjointExpressionsNeverCoincide() {
+        CronExpression onTheHour = CronExpression.parse("0 * * * *");
+        CronExpression onTheHalfHour = CronExpression.parse("30 * * * *");
+        assertFalse(onTheHour.intersect(onTheHalfHour).matches(now().truncatedTo(ChronoUnit.HOURS)));
+        assertFalse(CronExpression.coincides(onTheHour, onTheHalfHour));
+        assertTrue(CronExpression.coincides(onTheHour, CronExpression.parse("0 3 * * *")));
+    }
+
+    @Test
+    public void leapfrogsSpecialDays() {
+        CronExpression lastDayOfMonth = CronExpression.parse("0 12 L * *"), friday = CronExpression.parse("0 12 * * 5");
+        ZonedDateTime start = ZonedDateTime.of(2024, 1, 1, 0, 0, 0, 0, ZoneOffset.UTC);
+        assertEquals(ZonedDateTime.of(2024, 5, 31, 12, 0, 0, 0, ZoneOffset.UTC),
+                CronExpression.firstCoincidence(lastDayOfMonth, friday, start));
+
+        CronExpression nearestWeekday = CronExpression.parse("0 9 15W * *"), monday = CronExpression.parse("0 9 * * 1");
+        CronExpression intersection = nearestWeekday.intersect(monday);
+        ZonedDateTime t = start;
+        for (int i = 0; i < 10; i++) {
+            ZonedDateTime expected = nearestWeekday.nextTimeAfter(t);
+            while (!monday.matches(expected))
+                expected = nearestWeekday.nextTimeAfter(expected);
+            t = intersection.nextTimeAfter(t);
+            assertEquals(expected, t);
+        }
+    }
+
     private void assertHourly() {
         for (int day = 1; day <= 365; day++) {
             for (int hour = 0; hour <= 23; hour++) {
@@ -362,4 +477,132 @@ public class CronExpressionTest {
                 expression.matches(time)
         );
     }
+
+    @Test
+    public void detectsPeriods() {
+        assertEquals(Duration.ofMinutes(1), period("* * * * *"));
+        assertEquals(Duration.ofHours(1), period("*/15 * * * *"));
+        assertEquals(Duration.ofDays(1), period("0 9,17 * * ?"));
+        assertEquals(Duration.ofDays(7), period("*/15 9-17 * * 1-5"));
+        assertEquals(Duration.ofMinutes(1),
+                ((DefaultCronExpression) withSecondsField.parse("*/10 * * * * *")).getPeriod());
+        assertNull(period("0 9 1 * *"));
+        assertNull(period("0 9 * 1 *"));
+        assertNull(period("0 9 L * ?"));
+        assertNull(period("0 9 ? * 5#3"));
+        assertNull(period("0 9 * * * 2024"));
+        // too many fires to cache
+        assertNull(((DefaultCronExpression) withSecondsField.parse("* * * * * 1-5")).getPeriod());
+    }
+
+    @Test
+    public void periodicNextTimesMatchCalendar() {
+        String[] strings = {"* * * * *", "*/7 * * * *", "30 1,2 * * *", "0 0 * * *", "*/15 9-17 * * 1-5",
+                "59 23 * * 0,6", "0 */2 * * MON"};
+        ZoneId[] zones = {ZoneOffset.UTC, ZoneId.of("America/New_York"), ZoneId.of("Europe/London"),
+                ZoneId.of("Asia/Kolkata")};
+        ZonedDateTime[] starts = {
+                ZonedDateTime.of(2024, 3, 9, 0, 0, 0, 0, ZoneOffset.UTC),
+                ZonedDateTime.of(2024, 4, 6, 0, 0, 0, 0, ZoneOffset.UTC),
+                ZonedDateTime.of(2024, 11, 2, 0, 0, 0, 0, ZoneOffset.UTC)
+        };
+        for (String string : strings) {
+            CronExpression periodic = CronExpression.parse(string);
+            CronExpression calendar = CronExpression.parse(string + " 2000-2100");
+            for (ZoneId zone : zones) {
+                for (ZonedDateTime start : starts) {
+                    ZonedDateTime expected = start.withZoneSameInstant(zone).plusSeconds(17), actual = expected;
+                    for (int i = 0; i < 500; i++) {
+                        expected = calendar.nextTimeAfter(expected);
+                        actual = periodic.nextTimeAfter(actual);
+                        assertEquals(string + " in " + zone, expected, actual);
+                    }
+                    ZonedDateTime to = start.withZoneSameInstant(zone).plusDays(3);
+                    assertEquals(string + " in " + zone, calendar.count(start.withZoneSameInstant(zone), to),
+                            periodic.count(start.withZoneSameInstant(zone), to));
+                }
+            }
+        }
+    }
+
+    @Test
+    public void countsWithoutIterating() {
+        CronExpression workHours = CronExpression.parse("*/15 9-17 * * 1-5");
+        ZonedDateTime start = ZonedDateTime.of(2024, 1, 1, 0, 0, 0, 0, ZoneOffset.UTC);
+        assertEquals(262 * 36, workHours.count(start, start.plusYears(1)));
+        assertEquals(0, workHours.count(start, start));
+        assertEquals(1, workHours.count(start.withHour(9).minusSeconds(1), start.withHour(9)));
+        assertEquals(0, workHours.count(start.withHour(9), start.withHour(9).plusMinutes(14)));
+    }
+
+    @Test
+    public void detectsUnsatisfiableExpressions() {
+        assertFalse(CronExpression.parse("0 0 30 2 *").isSatisfiable());
+        assertFalse(CronExpression.parse("0 0 31 4,6,9,11 *").isSatisfiable());
+        assertTrue(CronExpression.parse("0 0 29 2 *").isSatisfiable());
+        assertTrue(CronExpression.parse("0 0 13 * 5").isSatisfiable());
+        assertTrue(CronExpression.parse("0 0 L 2 *").isSatisfiable());
+        assertTrue(CronExpression.parse("0 0 ? 2 1#5").isSatisfiable());
+        assertFalse(CronExpression.parse("0 0 30 2 * 2020-2030").isSatisfiable());
+        assertNull(CronExpression.parse("0 0 30 2 * 2020-2030").lastPossibleFire());
+        assertFalse(CronExpression.and(CronExpression.parse("0 0 30 2 *"), CronExpression.parse("* * * * *"))
+                .isSatisfiable());
+    }
+
+    @Test
+    public void findsLastPossibleFire() {
+        assertNull(CronExpression.parse("0 12 * * *").lastPossibleFire());
+        assertEquals(LocalDateTime.of(2024, 12, 31, 17, 45),
+                CronExpression.parse("*/15 9-17 * * * 2023,2024").lastPossibleFire());
+        assertEquals(LocalDateTime.of(2024, 12, 27, 0, 0), CronExpression.parse("0 0 * * 5 2024").lastPossibleFire());
+        assertEquals(LocalDateTime.of(2023, 2, 28, 0, 0),
+                CronExpression.parse("0 0 L 2 * 2020-2023").lastPossibleFire());
+        assertEquals(LocalDateTime.of(2020, 2, 29, 0, 0),
+                CronExpression.parse("0 0 29 2 * 2020-2023").lastPossibleFire());
+        CronExpression until2020 = CronExpression.parse("0 0 * * * 2020");
+        CronExpression until2030 = CronExpression.parse("0 0 * * * 2030");
+        assertEquals(LocalDateTime.of(2020, 12, 31, 0, 0), CronExpression.and(until2020, until2030).lastPossibleFire());
+        assertEquals(LocalDateTime.of(2030, 12, 31, 0, 0), CronExpression.or(until2020, until2030).lastPossibleFire());
+        assertNull(CronExpression.or(until2020, CronExpression.parse("0 0 * * *")).lastPossibleFire());
+    }
+
+    @Test
+    public void stepsOverYears() {
+        CronExpression evenYears = CronExpression.parse("0 0 1 1 * */2");
+        ZonedDateTime t = ZonedDateTime.of(2024, 6, 1, 0, 0, 0, 0, ZoneOffset.UTC);
+        assertEquals(t.withYear(2026).withMonth(1), evenYears.nextTimeAfter(t));
+        assertEquals(LocalDateTime.of(2198, 1, 1, 0, 0), evenYears.lastPossibleFire());
+        assertNull(evenYears.nextTimeAfter(t.withYear(2198)));
+        CronExpression fromNextYear = CronExpression.parse("0 0 1 1 * 2025/10");
+        assertEquals(t.withYear(2025).withMonth(1), fromNextYear.nextTimeAfter(t));
+        assertEquals(t.withYear(2035).withMonth(1), fromNextYear.nextTimeAfter(t.withYear(2025)));
+        assertEquals(Duration.ofDays(1), period("0 9 * * * *"));
+    }
+
+    @Test
+    public void subclassesOnlyNeedToMatch() {
+        CronExpression quarterPast = new CronExpression() {
+            @Override
+            public boolean matches(ZonedDateTime t) {
+                return t.getMinute() == 15 && t.getSecond() == 0;
+            }
+        };
+        ZonedDateTime t = ZonedDateTime.of(2024, 1, 1, 10, 15, 30, 0, ZoneOffset.UTC);
+        assertEquals(t.withHour(11).withSecond(0), quarterPast.nextTimeAfter(t));
+        assertEquals(24, quarterPast.count(t, t.plusDays(1)));
+        final AtomicInteger tries = new AtomicInteger();
+        CronExpression never = new CronExpression() {
+            @Override
+            public boolean matches(ZonedDateTime t) {
+                tries.incrementAndGet();
+                return false;
+            }
+        };
+        assertNull(never.nextTimeAfter(t));
+        assertEquals(366 * 24 * 60, tries.get());
+    }
+
+    private static Duration period(String s) {
+        return ((DefaultCronExpression) CronExpression.parse(s)).getPeriod();
+    }
 }
@@ -23,13 +23,24 @@
  */
 package cron;
 
+import com.google.common.collect.ConcurrentHashMultiset;
 import com.google.common.collect.HashMultiset;
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.ImmutableMultiset;
 import com.google.common.collect.Multiset;
 import org.junit.After;
 import org.junit.Before;
 import org.junit.Test;
 
+import java.time.ZoneId;
+import java.time.ZoneOffset;
+import java.time.ZonedDateTime;
+import java.time.temporal.ChronoUnit;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 import java.util.concurrent.ScheduledExecutorService;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicBoolean;
@@ -116,6 +127,197 @@ public class CronScheduleTest {
         assertEquals(1, counts.count("b"));
     }
 
+    @Test
+    public void boundaryRunsOnceWhenClockIsSetBack() throws Exception {
+        final Multiset<String> counts = HashMultiset.create();
+        schedule.add(CronExpression.parse("* * * * *"), new Runnable() {
+            @Override
+            public void run() {
+                counts.add("a");
+            }
+        });
+        schedule.run(tick(10, 10));
+        schedule.run(tick(11, 11));
+        schedule.run(tick(10, 10));
+        Thread.sleep(10);
+        assertEquals(2, counts.count("a"));
+    }
+
+    @Test
+    public void misfirePolicies() throws Exception {
+        final Multiset<MisfirePolicy> counts = HashMultiset.create();
+        CronExpression expression = CronExpression.parse("* * * * *");
+        for (final MisfirePolicy policy : MisfirePolicy.values()) {
+            schedule.add(Registration.builder(expression, new Runnable() {
+                @Override
+                public void run() {
+                    counts.add(policy);
+                }
+            }).withMisfirePolicy(policy).build());
+        }
+        schedule.run(tick(10, 10));
+        // paused from 10:00 until 15:30, so 11 through 14 were missed
+        schedule.run(tick(11, 15.5));
+        Thread.sleep(10);
+        assertEquals(2, counts.count(MisfirePolicy.SKIP));
+        assertEquals(3, counts.count(MisfirePolicy.FIRE_ONCE));
+        assertEquals(6, counts.count(MisfirePolicy.FIRE_ALL));
+    }
+
+    @Test
+    public void runMissedJumpsBetweenMatches() throws Exception {
+        final Multiset<String> counts = HashMultiset.create();
+        schedule.add(Registration.builder(CronExpression.parse("0 */6 * * *"), new Runnable() {
+            @Override
+            public void run() {
+                counts.add("a");
+            }
+        }).withMisfirePolicy(MisfirePolicy.FIRE_ALL).build());
+        ZonedDateTime start = ZonedDateTime.now().truncatedTo(ChronoUnit.DAYS);
+        schedule.runMissed(start, start.plusDays(30));
+        Thread.sleep(10);
+        assertEquals(30 * 4 - 1, counts.count("a"));
+    }
+
+    @Test
+    public void matchesInRegistrationZones() throws Exception {
+        final Multiset<String> counts = ConcurrentHashMultiset.create();
+        CronExpression nineOClock = CronExpression.parse("0 9 * * *");
+        for (final String zone : new String[]{"Europe/Oslo", "America/New_York", "Asia/Tokyo"}) {
+            schedule.add(nineOClock, ZoneId.of(zone), new Runnable() {
+                @Override
+                public void run() {
+                    counts.add(zone);
+                }
+            });
+        }
+        schedule.add(nineOClock, new Runnable() {
+            @Override
+            public void run() {
+                counts.add("UTC");
+            }
+        });
+        // 09:00 in Oslo, 03:00 in New York, 17:00 in Tokyo
+        ZonedDateTime time = ZonedDateTime.of(2024, 1, 15, 8, 0, 0, 0, ZoneOffset.UTC);
+        schedule.run(time);
+        schedule.run(time.plusHours(1));
+        schedule.run(time.plusHours(6));
+        Thread.sleep(10);
+        assertEquals(ImmutableMultiset.of("Europe/Oslo", "UTC", "America/New_York"), ImmutableMultiset.copyOf(counts));
+        assertEquals(4, schedule.getMetrics().getRegistrations());
+
+        schedule.remove(nineOClock);
+        assertEquals(0, schedule.getMetrics().getRegistrations());
+    }
+
+    @Test
+    public void retiresExpiredAndSetsAsideUnsatisfiable() throws Exception {
+        final Multiset<String> counts = ConcurrentHashMultiset.create();
+        schedule.add(CronExpression.parse("0 0 30 2 *"), new Runnable() {
+            @Override
+            public void run() {
+                counts.add("never");
+            }
+        });
+        assertEquals(1, schedule.getUnsatisfiable().size());
+        assertEquals(1, schedule.getMetrics().getUnsatisfiable());
+        assertEquals(0, schedule.getMetrics().getRegistrations());
+
+        schedule.add(CronExpression.parse("0 * * * * 2024"), new Runnable() {
+            @Override
+            public void run() {
+                counts.add("2024");
+            }
+        });
+        schedule.add(CronExpression.parse("0 * * * *"), ZoneId.of("Asia/Tokyo"), new Runnable() {
+            @Override
+            public void run() {
+                counts.add("hourly");
+            }
+        });
+        ZonedDateTime lastHour = ZonedDateTime.of(2024, 12, 31, 23, 0, 0, 0, ZoneOffset.UTC);
+        schedule.run(lastHour);
+        schedule.run(lastHour.plusHours(1));
+        Thread.sleep(10);
+        assertEquals(ImmutableMultiset.of("2024", "hourly", "hourly"), ImmutableMultiset.copyOf(counts));
+        assertEquals(1, schedule.getMetrics().getRetired());
+        assertEquals(1, schedule.getMetrics().getRegistrations());
+    }
+
+    @Test
+    public void blockingRunnablesDoNotHoldUpTicks() throws Exception {
+        final int count = 1000;
+        final CountDownLatch started = new CountDownLatch(count), release = new CountDownLatch(1);
+        schedule = new CronSchedule(executor, VirtualThreads.newThreadPerTaskExecutor(), false);
+        CronExpression expression = CronExpression.parse("* * * * *");
+        for (int i = 0; i < count; i++) {
+            schedule.add(expression, new Runnable() {
+                @Override
+                public void run() {
+                    started.countDown();
+                    try {
+                        release.await();
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                    }
+                }
+            });
+        }
+        Future<?> tick = executor.submit(new Runnable() {
+            @Override
+            public void run() {
+                schedule.run();
+            }
+        });
+        tick.get(5, TimeUnit.SECONDS);
+        assertTrue(started.await(5, TimeUnit.SECONDS));
+        release.countDown();
+    }
+
+    @Test
+    public void concurrencyPolicies() throws Exception {
+        final Multiset<String> counts = ConcurrentHashMultiset.create();
+        final CountDownLatch release = new CountDownLatch(1);
+        ExecutorService runnables = Executors.newCachedThreadPool();
+        schedule = new CronSchedule(executor, runnables, false);
+        CronExpression expression = CronExpression.parse("* * * * *");
+        Map<String, ConcurrencyPolicy> policies = ImmutableMap.of(
+                "unbounded", ConcurrencyPolicy.unbounded(),
+                "skip", ConcurrencyPolicy.skipIfRunning(),
+                "queue", ConcurrencyPolicy.queueOne(),
+                "two", ConcurrencyPolicy.maxInFlight(2));
+        for (final Map.Entry<String, ConcurrencyPolicy> policy : policies.entrySet()) {
+            schedule.add(Registration.builder(expression, new Runnable() {
+                @Override
+                public void run() {
+                    counts.add(policy.getKey());
+                    try {
+                        release.await();
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                    }
+                }
+            }).withConcurrencyPolicy(policy.getValue()).build());
+        }
+        ZonedDateTime time = ZonedDateTime.now().truncatedTo(ChronoUnit.MINUTES);
+        for (int i = 0; i < 3; i++)
+            schedule.run(time.plusMinutes(i));
+        Thread.sleep(100);
+        assertEquals(3, counts.count("unbounded"));
+        assertEquals(1, counts.count("skip"));
+        assertEquals(1, counts.count("queue"));
+        assertEquals(2, counts.count("two"));
+        assertEquals(2 + 1 + 1, schedule.getMetrics().getSkipped());
+        release.countDown();
+        Thread.sleep(100);
+        // the queued run starts once the one ahead of it finishes
+        assertEquals(2, counts.count("queue"));
+        schedule.run(time.plusMinutes(3));
+        Thread.sleep(100);
+        assertEquals(2, counts.count("skip"));
+        runnables.shutdown();
+    }
+
     @After
     public void after() {
         if (schedule != null)
@@ -124,6 +326,11 @@ public class CronScheduleTest {
             executor.shutdownNow();
     }
 
+    private static Tick tick(int minute, double actualMinute) {
+        long minuteInMilliseconds = TimeUnit.MINUTES.toMillis(1);
+        return new Tick(minute * minuteInMilliseconds, (long) (actualMinute * minuteInMilliseconds), 0, 0, false);
+    }
+
     private void runAndWait() throws InterruptedException {
         schedule.run();
         Thread.sleep(10);
@@ -25,6 +25,7 @@ package cron;
 
 import org.junit.Test;
 
+import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertTrue;
 
 import java.time.DayOfWeek;
@@ -56,6 +57,17 @@ public class DayOfMonthFieldTest {
         assertTrue(field.matches(monday));
     }
 
+    @Test
+    public void hashOccursInEveryMonth() {
+        for (int i = 0; i < 1000; i++) {
+            field = DayOfMonthField.parse(new Tokens("H", "key" + i));
+            assertEquals(1, Long.bitCount(field.mask()));
+            assertTrue(Long.numberOfTrailingZeros(field.mask()) <= 28);
+        }
+        field = DayOfMonthField.parse(new Tokens("H(29-31)", "key"));
+        assertTrue(Long.numberOfTrailingZeros(field.mask()) >= 29);
+    }
+
     private DayOfMonthField parse(String s) {
         return field = DayOfMonthField.parse(new Tokens(s));
     }
@@ -61,6 +61,14 @@ public class DefaultFieldTest {
         assertContainsRange(1, 10);
     }
 
+    @Test
+    public void mask() {
+        parse("1-2,5,*/20", 0, 59);
+        assertEquals(1L | 1L << 1 | 1L << 2 | 1L << 5 | 1L << 20 | 1L << 40, field.mask());
+        parse("*", 1, 12);
+        assertEquals(0x1ffeL, field.mask());
+    }
+
     @Test
     public void multipleRanges() {
         parse("1-2,3-4", 1, 5);
@@ -129,6 +137,77 @@ public class DefaultFieldTest {
         assertContains(0, 5, 10, 15, 20);
     }
 
+    @Test
+    public void hash() {
+        parse("H", 0, 59, "key");
+        assertEquals(1, countContained(0, 59));
+        assertEquals(field, parse("H", 0, 59, "key"));
+    }
+
+    @Test
+    public void hashRange() {
+        for (int i = 0; i < 100; i++) {
+            parse("H(10-14)", 0, 59, "key" + i);
+            assertEquals(1, countContained(10, 14));
+            assertEquals(1, countContained(0, 59));
+        }
+    }
+
+    @Test
+    public void hashSkip() {
+        for (int i = 0; i < 100; i++) {
+            parse("H/15", 0, 59, "key" + i);
+            assertEquals(4, countContained(0, 59));
+            int first = 0;
+            while (!field.contains(first))
+                first++;
+            assertTrue(first < 15);
+            assertContains(first, first + 15, first + 30, first + 45);
+        }
+    }
+
+    @Test
+    public void hashRangeSkip() {
+        parse("H(0-29)/10", 0, 59, "key");
+        assertEquals(3, countContained(0, 29));
+        assertEquals(0, countContained(30, 59));
+    }
+
+    @Test
+    public void hashWithOtherValues() {
+        parse("H(10-14),30", 0, 59, "key");
+        assertEquals(1, countContained(10, 14));
+        assertContains(30);
+    }
+
+    @Test
+    public void danglingHashRange() {
+        try {
+            parse("H(10-", 0, 59, "key");
+            fail("Expected exception");
+        } catch (IllegalStateException e) {
+            assertEquals("Expected number", e.getMessage());
+        }
+    }
+
+    @Test
+    public void hashZeroSkip() {
+        try {
+            parse("H/0", 0, 59, "key");
+            fail("Expected exception");
+        } catch (IllegalArgumentException e) {
+            assertEquals("Zero step for 'H'", e.getMessage());
+        }
+    }
+
+    private int countContained(int first, int last) {
+        int count = 0;
+        for (int number = first; number <= last; number++)
+            if (field.contains(number))
+                count++;
+        return count;
+    }
+
     private void assertContains(int... numbers) {
         for (int number : numbers)
             assertTrue(field.contains(number));
@@ -142,4 +221,8 @@ public class DefaultFieldTest {
     private DefaultField parse(String s, int min, int max) {
         return field = DefaultField.parse(new Tokens(s), min, max);
     }
+
+    private DefaultField parse(String s, int min, int max, String hashKey) {
+        return field = DefaultField.parse(new Tokens(s, hashKey), min, max);
+    }
 }
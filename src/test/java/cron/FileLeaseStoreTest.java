@@ -0,0 +1,90 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2013 Anders Wisch
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package cron;
+
+import com.google.common.collect.ImmutableMap;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class FileLeaseStoreTest {
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private ClusteredCronScheduleTest.MutableClock clock;
+    private FileLeaseStore store;
+
+    @Before
+    public void before() {
+        clock = new ClusteredCronScheduleTest.MutableClock();
+        store = new FileLeaseStore(folder.getRoot().toPath(), clock);
+    }
+
+    @Test
+    public void ownerCanRenew() {
+        assertTrue(store.tryAcquire("partition-1", "a", 1000));
+        clock.advance(500);
+        assertTrue(store.tryAcquire("partition-1", "a", 1000));
+        clock.advance(900);
+        assertFalse(store.tryAcquire("partition-1", "b", 1000));
+    }
+
+    @Test
+    public void othersWaitForExpiry() {
+        assertTrue(store.tryAcquire("partition-1", "a", 1000));
+        assertFalse(store.tryAcquire("partition-1", "b", 1000));
+        clock.advance(1000);
+        assertTrue(store.tryAcquire("partition-1", "b", 1000));
+        assertEquals(ImmutableMap.of("partition-1", "b"), store.owners("partition-"));
+    }
+
+    @Test
+    public void onlyOwnerCanRelease() {
+        store.tryAcquire("partition-1", "a", 1000);
+        store.release("partition-1", "b");
+        assertFalse(store.tryAcquire("partition-1", "b", 1000));
+        store.release("partition-1", "a");
+        assertTrue(store.tryAcquire("partition-1", "b", 1000));
+    }
+
+    @Test
+    public void storesShareADirectory() {
+        FileLeaseStore other = new FileLeaseStore(folder.getRoot().toPath(), clock);
+        store.tryAcquire("member-a", "a", 1000);
+        other.tryAcquire("member-b", "b", 1000);
+        other.tryAcquire("partition-1", "b", 1000);
+        assertEquals(ImmutableMap.of("member-a", "a", "member-b", "b"), store.owners("member-"));
+        assertFalse(store.tryAcquire("partition-1", "a", 1000));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void rejectsNamesThatAreNotFileNames() {
+        store.tryAcquire("../partition-1", "a", 1000);
+    }
+}
@@ -0,0 +1,214 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2013 Anders Wisch
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package cron;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.time.ZoneOffset;
+import java.time.ZonedDateTime;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class FirePublisherTest {
+    private static final ZonedDateTime START = ZonedDateTime.of(2024, 1, 1, 0, 0, 0, 0, ZoneOffset.UTC);
+
+    private ScheduledExecutorService executor;
+    private CronSchedule schedule;
+    private int fired;
+
+    @Before
+    public void before() {
+        executor = Executors.newSingleThreadScheduledExecutor();
+        schedule = new CronSchedule(executor);
+        schedule.add(Registration.builder(CronExpression.parse("* * * * *"), new Runnable() {
+            @Override
+            public void run() {
+            }
+        }).withId("job").build());
+    }
+
+    @Test
+    public void deliversOnlyWhatWasRequested() {
+        FirePublisher publisher = FirePublisher.builder(schedule).build();
+        Recorder recorder = new Recorder();
+        publisher.subscribe(recorder);
+        recorder.subscription.request(2);
+        fire(3);
+        assertEquals(2, recorder.events.size());
+        FireEvent event = recorder.events.get(0);
+        assertEquals("job", event.getId());
+        assertEquals("* * * * *", event.getExpression().toString());
+        assertEquals(START.toInstant(), event.getScheduledTime());
+        assertTrue(!event.getActualTime().isBefore(event.getScheduledTime()));
+        recorder.subscription.request(1);
+        assertEquals(3, recorder.events.size());
+        assertEquals(START.plusMinutes(2).toInstant(), recorder.events.get(2).getScheduledTime());
+    }
+
+    @Test
+    public void dropsNewEventsWhenFull() {
+        FirePublisher publisher = FirePublisher.builder(schedule).withBufferSize(2).build();
+        Recorder recorder = new Recorder();
+        publisher.subscribe(recorder);
+        fire(5);
+        recorder.subscription.request(10);
+        assertEquals(2, recorder.events.size());
+        assertEquals(START.toInstant(), recorder.events.get(0).getScheduledTime());
+        assertEquals(START.plusMinutes(1).toInstant(), recorder.events.get(1).getScheduledTime());
+        assertEquals(3, publisher.getDropped());
+    }
+
+    @Test
+    public void keepsLatestEventsWhenFull() {
+        FirePublisher publisher = FirePublisher.builder(schedule)
+                .withOverflowStrategy(OverflowStrategy.LATEST)
+                .withBufferSize(2)
+                .build();
+        Recorder recorder = new Recorder();
+        publisher.subscribe(recorder);
+        fire(5);
+        recorder.subscription.request(10);
+        assertEquals(2, recorder.events.size());
+        assertEquals(START.plusMinutes(3).toInstant(), recorder.events.get(0).getScheduledTime());
+        assertEquals(START.plusMinutes(4).toInstant(), recorder.events.get(1).getScheduledTime());
+        assertEquals(3, publisher.getDropped());
+    }
+
+    @Test
+    public void failsWhenBufferOverflows() {
+        FirePublisher publisher = FirePublisher.builder(schedule)
+                .withOverflowStrategy(OverflowStrategy.ERROR)
+                .withBufferSize(2)
+                .build();
+        Recorder recorder = new Recorder();
+        publisher.subscribe(recorder);
+        fire(3);
+        assertTrue(recorder.error instanceof IllegalStateException);
+        assertEquals(0, recorder.events.size());
+        assertEquals(0, publisher.getSubscriberCount());
+        assertEquals(3, publisher.getDropped());
+    }
+
+    @Test
+    public void rejectsNonPositiveRequests() {
+        FirePublisher publisher = FirePublisher.builder(schedule).build();
+        Recorder recorder = new Recorder();
+        publisher.subscribe(recorder);
+        recorder.subscription.request(0);
+        assertTrue(recorder.error instanceof IllegalArgumentException);
+    }
+
+    @Test
+    public void cancelStopsDelivery() {
+        FirePublisher publisher = FirePublisher.builder(schedule).build();
+        Recorder recorder = new Recorder();
+        publisher.subscribe(recorder);
+        recorder.subscription.request(Long.MAX_VALUE);
+        fire(1);
+        recorder.subscription.cancel();
+        fire(1);
+        assertEquals(1, recorder.events.size());
+        assertEquals(0, publisher.getSubscriberCount());
+    }
+
+    @Test
+    public void closeCompletesAfterBufferedEvents() {
+        FirePublisher publisher = FirePublisher.builder(schedule).build();
+        Recorder recorder = new Recorder();
+        publisher.subscribe(recorder);
+        fire(2);
+        publisher.close();
+        fire(1);
+        assertEquals(1, recorder.completed.getCount());
+        recorder.subscription.request(5);
+        assertEquals(2, recorder.events.size());
+        assertEquals(0, recorder.completed.getCount());
+        assertNull(recorder.error);
+    }
+
+    @Test
+    public void publishesSingleExpression() throws Exception {
+        CronExpression expression = CronExpression.parser().withSecondsField(true).parse("* * * * * *");
+        FirePublisher publisher = FirePublisher.builder(expression, executor)
+                .withSecondsField(true)
+                .withId("every second")
+                .build();
+        Recorder recorder = new Recorder();
+        publisher.subscribe(recorder);
+        recorder.subscription.request(Long.MAX_VALUE);
+        Thread.sleep(2500);
+        publisher.close();
+        assertTrue(recorder.completed.await(1, TimeUnit.SECONDS));
+        assertTrue(recorder.events.size() >= 2);
+        assertEquals("every second", recorder.events.get(0).getId());
+    }
+
+    private void fire(int times) {
+        for (int i = 0; i < times; i++)
+            schedule.run(START.plusMinutes(fired++));
+    }
+
+    @After
+    public void after() {
+        schedule.stop();
+        executor.shutdownNow();
+    }
+
+    private static final class Recorder implements FireSubscriber {
+        private final List<FireEvent> events = new CopyOnWriteArrayList<>();
+        private final CountDownLatch completed = new CountDownLatch(1);
+        private volatile FireSubscription subscription;
+        private volatile Throwable error;
+
+        @Override
+        public void onSubscribe(FireSubscription subscription) {
+            this.subscription = subscription;
+        }
+
+        @Override
+        public void onNext(FireEvent event) {
+            events.add(event);
+        }
+
+        @Override
+        public void onError(Throwable throwable) {
+            error = throwable;
+        }
+
+        @Override
+        public void onComplete() {
+            completed.countDown();
+        }
+    }
+}
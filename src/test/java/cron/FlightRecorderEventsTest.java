@@ -0,0 +1,123 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2013 Anders Wisch
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package cron;
+
+import jdk.jfr.Recording;
+import jdk.jfr.consumer.RecordedEvent;
+import jdk.jfr.consumer.RecordingFile;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.nio.file.Path;
+import java.time.ZonedDateTime;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+
+import static org.junit.Assert.assertEquals;
+
+public class FlightRecorderEventsTest {
+    private static final Executor DIRECT = new Executor() {
+        @Override
+        public void execute(Runnable command) {
+            command.run();
+        }
+    };
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void recordsTicksDispatchesAndRuns() throws Exception {
+        ScheduledExecutorService executor = Executors.newSingleThreadScheduledExecutor();
+        CronSchedule schedule = new CronSchedule(executor, DIRECT, false);
+        schedule.add(Registration.builder(CronExpression.parse("*/5 * * * *"), new Runnable() {
+            @Override
+            public void run() {
+            }
+        }).withId("every-five").build());
+        schedule.add(CronExpression.parse("1 * * * *"), new Runnable() {
+            @Override
+            public void run() {
+            }
+        });
+        ZonedDateTime time = ZonedDateTime.now().truncatedTo(ChronoUnit.HOURS);
+        Path file = folder.newFile("recording.jfr").toPath();
+        try (Recording recording = new Recording()) {
+            recording.enable("cron.Tick");
+            recording.enable("cron.Dispatch");
+            recording.enable("cron.Run");
+            recording.start();
+            schedule.run(time);
+            recording.stop();
+            recording.dump(file);
+        } finally {
+            executor.shutdownNow();
+        }
+        List<RecordedEvent> ticks = events(file, "cron.Tick"), runs = events(file, "cron.Run");
+        assertEquals(1, ticks.size());
+        assertEquals(2, ticks.get(0).getInt("evaluated"));
+        assertEquals(1, ticks.get(0).getInt("matched"));
+        assertEquals(time.toInstant(), ticks.get(0).getInstant("time"));
+        assertEquals(1, events(file, "cron.Dispatch").size());
+        assertEquals(1, runs.size());
+        assertEquals("*/5 * * * *", runs.get(0).getString("expression"));
+        assertEquals("every-five", runs.get(0).getString("id"));
+    }
+
+    @Test
+    public void disabledEventsAreNotRecorded() throws Exception {
+        ScheduledExecutorService executor = Executors.newSingleThreadScheduledExecutor();
+        CronSchedule schedule = new CronSchedule(executor, DIRECT, false);
+        schedule.add(CronExpression.parse("* * * * *"), new Runnable() {
+            @Override
+            public void run() {
+            }
+        });
+        Path file = folder.newFile("recording.jfr").toPath();
+        try (Recording recording = new Recording()) {
+            recording.disable("cron.Tick");
+            recording.start();
+            schedule.run(ZonedDateTime.now());
+            recording.stop();
+            recording.dump(file);
+        } finally {
+            executor.shutdownNow();
+        }
+        assertEquals(0, events(file, "cron.Tick").size());
+        assertEquals(1, events(file, "cron.Run").size());
+    }
+
+    private static List<RecordedEvent> events(Path file, String name) throws Exception {
+        List<RecordedEvent> events = new ArrayList<>();
+        for (RecordedEvent event : RecordingFile.readAllEvents(file))
+            if (event.getEventType().getName().equals(name))
+                events.add(event);
+        return events;
+    }
+}
@@ -0,0 +1,94 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2013 Anders Wisch
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package cron;
+
+import org.junit.Test;
+
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class LatencyHistogramTest {
+    @Test
+    public void bucketsAreContiguous() {
+        for (int i = 1; i < 1376; i++)
+            assertEquals(LatencyHistogram.highestValue(i - 1) + 1, lowestValue(i));
+        for (long value = 0; value < 100000; value++) {
+            int index = LatencyHistogram.index(value);
+            assertTrue(lowestValue(index) <= value && value <= LatencyHistogram.highestValue(index));
+        }
+    }
+
+    @Test
+    public void hugeValuesGoInTheLastBucket() {
+        assertEquals(1375, LatencyHistogram.index(Long.MAX_VALUE));
+        assertEquals(1375, LatencyHistogram.index(1L << 50));
+    }
+
+    @Test
+    public void percentilesAreWithinThreePercent() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        for (int i = 1; i <= 100000; i++)
+            histogram.record(i * 1000L);
+        LatencyHistogram.Snapshot snapshot = histogram.snapshot();
+        assertEquals(100000, snapshot.getCount());
+        assertEquals(100000000, snapshot.getMax());
+        assertEquals(50000500, snapshot.getMean(), 0.5);
+        assertWithin(50000000, snapshot.getMedian());
+        assertWithin(99000000, snapshot.get99thPercentile());
+        assertWithin(99900000, snapshot.get999thPercentile());
+        assertEquals(100000000, snapshot.getValueAtPercentile(100));
+    }
+
+    @Test
+    public void mergeAddsCounts() {
+        LatencyHistogram a = new LatencyHistogram(), b = new LatencyHistogram();
+        Random random = new Random(1);
+        for (int i = 0; i < 1000; i++) {
+            a.record(random.nextInt(1000000));
+            b.record(1000000 + random.nextInt(1000000));
+        }
+        LatencyHistogram.Snapshot merged = a.snapshot().merge(b.snapshot());
+        assertEquals(2000, merged.getCount());
+        assertEquals(b.snapshot().getMax(), merged.getMax());
+        assertWithin(1000000, merged.getMedian());
+    }
+
+    @Test
+    public void emptyHistogram() {
+        LatencyHistogram.Snapshot snapshot = new LatencyHistogram().snapshot();
+        assertEquals(0, snapshot.getCount());
+        assertEquals(0, snapshot.getMedian());
+        assertEquals(0, snapshot.getMean(), 0);
+    }
+
+    private static long lowestValue(int index) {
+        return index == 0 ? 0 : LatencyHistogram.highestValue(index - 1) + 1;
+    }
+
+    private static void assertWithin(long expected, long actual) {
+        assertTrue(actual + " is not within 3% of " + expected, Math.abs(actual - expected) <= expected * 0.03);
+    }
+}
@@ -0,0 +1,107 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2013 Anders Wisch
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package cron;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+import java.time.Duration;
+import java.time.ZoneId;
+import java.time.ZoneOffset;
+import java.time.ZonedDateTime;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+
+import org.junit.Test;
+
+public class LoadForecastTest {
+    private static final ZonedDateTime start = ZonedDateTime.of(2024, 1, 1, 0, 0, 0, 0, ZoneOffset.UTC);
+
+    @Test
+    public void countsPerBucket() {
+        List<CronExpression> expressions = new ArrayList<>();
+        expressions.add(CronExpression.parse("0 * * * *"));
+        expressions.add(CronExpression.parse("*/15 * * * *"));
+        expressions.add(CronExpression.parse("30 12 * * *"));
+        LoadForecast forecast = LoadForecast.builder(expressions, start, start.plusDays(1))
+                .withGranularity(Duration.ofHours(1))
+                .build();
+        assertEquals(24, forecast.getBucketCount());
+        assertEquals(5, forecast.getCount(0));
+        assertEquals(6, forecast.getCount(12));
+        assertEquals(24 * 5 + 1, forecast.getTotal());
+        assertEquals(6, forecast.getPeak());
+        assertEquals(start.withHour(12), forecast.getPeakTime());
+        assertEquals(5, forecast.getMedian());
+        assertEquals(6, forecast.getValueAtPercentile(100));
+    }
+
+    @Test
+    public void endsWithPartialBucket() {
+        LoadForecast forecast = LoadForecast.builder(Collections.singletonList(CronExpression.parse("* * * * *")),
+                start, start.plusMinutes(90))
+                .withGranularity(Duration.ofHours(1))
+                .build();
+        assertEquals(2, forecast.getBucketCount());
+        assertEquals(60, forecast.getCount(0));
+        assertEquals(30, forecast.getCount(1));
+        assertEquals(start.plusHours(1), forecast.getBucketStart(1));
+    }
+
+    @Test
+    public void emptyWindow() {
+        LoadForecast forecast = LoadForecast.builder(Collections.singletonList(CronExpression.parse("* * * * *")),
+                start, start).build();
+        assertEquals(0, forecast.getBucketCount());
+        assertEquals(0, forecast.getPeak());
+        assertNull(forecast.getPeakTime());
+        assertEquals(0, forecast.getMedian());
+    }
+
+    @Test
+    public void matchesSequentialCount() {
+        Random random = new Random(42);
+        List<CronExpression> expressions = new ArrayList<>();
+        for (int i = 0; i < 1000; i++)
+            expressions.add(CronExpression.parse("*/" + (1 + random.nextInt(30)) + " "
+                    + random.nextInt(24) + "-23 * * " + random.nextInt(7)));
+        ZonedDateTime from = ZonedDateTime.of(2024, 3, 8, 7, 0, 0, 0, ZoneId.of("America/New_York"));
+        ZonedDateTime to = from.plusDays(4);
+        LoadForecast forecast = LoadForecast.builder(expressions, from, to)
+                .withGranularity(Duration.ofMinutes(5))
+                .withPool(new ForkJoinPool(4))
+                .build();
+        long[] expected = new long[forecast.getBucketCount()];
+        for (CronExpression expression : expressions) {
+            for (ZonedDateTime t = expression.nextTimeAfter(from.minusSeconds(1)); t.isBefore(to);
+                 t = expression.nextTimeAfter(t))
+                expected[(int) (Duration.between(from, t).toMinutes() / 5)]++;
+        }
+        for (int i = 0; i < expected.length; i++)
+            assertEquals("bucket " + i, expected[i], forecast.getCount(i));
+    }
+}
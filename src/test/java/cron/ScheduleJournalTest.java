@@ -0,0 +1,260 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2013 Anders Wisch
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package cron;
+
+import com.google.common.collect.ConcurrentHashMultiset;
+import com.google.common.collect.Multiset;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.RandomAccessFile;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Instant;
+import java.time.ZoneId;
+import java.time.ZonedDateTime;
+import java.time.temporal.ChronoUnit;
+import java.util.List;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class ScheduleJournalTest {
+    private static final Executor DIRECT = new Executor() {
+        @Override
+        public void execute(Runnable command) {
+            command.run();
+        }
+    };
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private Path directory;
+    private ScheduleJournal journal;
+    private ScheduledExecutorService executor;
+
+    @Before
+    public void before() {
+        directory = folder.getRoot().toPath();
+        journal = new ScheduleJournal(directory, 4096);
+        executor = Executors.newSingleThreadScheduledExecutor();
+    }
+
+    @Test
+    public void recoversRegistrationsRemovalsAndFires() {
+        journal.registered(registration("a", "0 * * * *", MisfirePolicy.FIRE_ALL));
+        journal.registered(registration("b", "30 * * * *", MisfirePolicy.SKIP));
+        journal.registered(registration("c", "45 * * * *", MisfirePolicy.FIRE_ONCE));
+        journal.fired("a", 1000);
+        journal.fired("a", 2000);
+        journal.removed("b");
+        reopen();
+        List<ScheduleJournal.Entry> entries = journal.entries();
+        assertEquals(2, entries.size());
+        assertEquals("a", entries.get(0).getId());
+        assertEquals("0 * * * *", entries.get(0).getExpression());
+        assertEquals(MisfirePolicy.FIRE_ALL, entries.get(0).getMisfirePolicy());
+        assertEquals(Instant.ofEpochMilli(2000), entries.get(0).getLastFireTime());
+        assertEquals("c", entries.get(1).getId());
+        assertNull(entries.get(1).getLastFireTime());
+    }
+
+    @Test
+    public void recordsZones() {
+        ZoneId zone = ZoneId.of("Australia/Sydney");
+        journal.registered(Registration.builder(CronExpression.parse("0 9 * * *"), new Runnable() {
+            @Override
+            public void run() {
+            }
+        }).withId("a").withZone(zone).build());
+        journal.registered(registration("b", "0 9 * * *", MisfirePolicy.SKIP));
+        reopen();
+        assertEquals(zone, journal.entries().get(0).getZone());
+        assertNull(journal.entries().get(1).getZone());
+        journal.compact();
+        reopen();
+        assertEquals(zone, journal.entries().get(0).getZone());
+        assertNull(journal.entries().get(1).getZone());
+    }
+
+    @Test
+    public void compactsWhenFull() {
+        for (int i = 0; i < 100; i++)
+            journal.registered(registration("job-" + i, i % 60 + " * * * *", MisfirePolicy.SKIP));
+        for (int i = 0; i < 1000; i++)
+            journal.fired("job-" + i % 100, i);
+        for (int i = 0; i < 50; i++)
+            journal.removed("job-" + i);
+        assertTrue(Files.exists(directory.resolve("snapshot")));
+        reopen();
+        List<ScheduleJournal.Entry> entries = journal.entries();
+        assertEquals(50, entries.size());
+        for (ScheduleJournal.Entry entry : entries) {
+            int job = Integer.parseInt(entry.getId().substring(4));
+            assertEquals(Instant.ofEpochMilli(900 + job), entry.getLastFireTime());
+        }
+    }
+
+    @Test
+    public void ignoresTornTail() throws Exception {
+        journal.registered(registration("a", "0 * * * *", MisfirePolicy.SKIP));
+        journal.registered(registration("b", "0 * * * *", MisfirePolicy.SKIP));
+        journal.close();
+        try (RandomAccessFile file = new RandomAccessFile(directory.resolve("journal").toFile(), "rw")) {
+            // corrupt the last byte of the second record
+            int first = 16 + 8 + readInt(file, 16);
+            int second = first + 8 + readInt(file, first);
+            file.seek(second - 1);
+            file.write(0x7f);
+        }
+        journal = new ScheduleJournal(directory, 4096);
+        assertEquals(1, journal.entries().size());
+        journal.registered(registration("c", "0 * * * *", MisfirePolicy.SKIP));
+        reopen();
+        assertEquals(2, journal.entries().size());
+        assertEquals("c", journal.entries().get(1).getId());
+    }
+
+    @Test
+    public void scheduleRecordsAndRecovers() {
+        final Multiset<String> counts = ConcurrentHashMultiset.create();
+        CronSchedule schedule = new CronSchedule(executor, DIRECT, false);
+        schedule.recover(journal, resolver(counts));
+        CronExpression expression = CronExpression.parse("* * * * *");
+        schedule.add(Registration.builder(expression, runnable(counts, "once")).withId("once")
+                .withMisfirePolicy(MisfirePolicy.FIRE_ONCE).build());
+        schedule.add(Registration.builder(expression, runnable(counts, "skip")).withId("skip").build());
+        schedule.add(expression, runnable(counts, "anonymous"));
+        schedule.run(ZonedDateTime.now().truncatedTo(ChronoUnit.MINUTES).minusMinutes(3));
+        assertEquals(1, counts.count("once"));
+        reopen();
+
+        counts.clear();
+        schedule = new CronSchedule(executor, DIRECT, false);
+        schedule.recover(journal, resolver(counts));
+        assertEquals(1, counts.count("once"));
+        assertEquals(0, counts.count("skip"));
+        assertEquals(2, schedule.getMetrics().getRegistrations());
+
+        schedule.remove(expression);
+        reopen();
+        assertEquals(0, journal.entries().size());
+    }
+
+    @Test
+    public void recordsRegistrationTimes() {
+        journal.registered(registration("a", "0 * * * *", MisfirePolicy.SKIP), 1000);
+        journal.registered(registration("b", "0 * * * *", MisfirePolicy.SKIP), 2000);
+        reopen();
+        assertEquals(Instant.ofEpochMilli(1000), journal.entries().get(0).getRegistrationTime());
+        journal.compact();
+        reopen();
+        assertEquals(Instant.ofEpochMilli(1000), journal.entries().get(0).getRegistrationTime());
+        assertEquals(Instant.ofEpochMilli(2000), journal.entries().get(1).getRegistrationTime());
+    }
+
+    @Test
+    public void catchesUpFromRegistrationWhenNeverFired() {
+        ZonedDateTime minute = ZonedDateTime.now().truncatedTo(ChronoUnit.MINUTES);
+        journal.registered(registration("all", "* * * * *", MisfirePolicy.FIRE_ALL),
+                minute.minusMinutes(10).plusSeconds(1).toInstant().toEpochMilli());
+        journal.registered(registration("once", "* * * * *", MisfirePolicy.FIRE_ONCE),
+                minute.minusMinutes(10).toInstant().toEpochMilli());
+        reopen();
+        Multiset<String> counts = ConcurrentHashMultiset.create();
+        new CronSchedule(executor, DIRECT, false).recover(journal, resolver(counts));
+        // one more if the minute turned over since the registrations were made
+        assertTrue(counts.count("all") == 10 || counts.count("all") == 11);
+        assertEquals(1, counts.count("once"));
+    }
+
+    @Test
+    public void setsAsideRecoveredExpressionsThatCannotFire() {
+        journal.registered(registration("never", "0 0 30 2 *", MisfirePolicy.FIRE_ALL), 0);
+        journal.registered(registration("hourly", "0 * * * *", MisfirePolicy.SKIP));
+        reopen();
+        CronSchedule schedule = new CronSchedule(executor, DIRECT, false);
+        schedule.recover(journal, resolver(ConcurrentHashMultiset.<String>create()));
+        assertEquals(1, schedule.getUnsatisfiable().size());
+        assertEquals("never", schedule.getUnsatisfiable().get(0).getId());
+        assertEquals(1, schedule.getMetrics().getRegistrations());
+        reopen();
+        assertEquals(1, journal.entries().size());
+        assertEquals("hourly", journal.entries().get(0).getId());
+    }
+
+    private static ScheduleJournal.Resolver resolver(final Multiset<String> counts) {
+        return new ScheduleJournal.Resolver() {
+            @Override
+            public Registration resolve(ScheduleJournal.Entry entry) {
+                return Registration.builder(CronExpression.parse(entry.getExpression()), runnable(counts, entry.getId()))
+                        .withId(entry.getId())
+                        .withMisfirePolicy(entry.getMisfirePolicy())
+                        .withZone(entry.getZone())
+                        .build();
+            }
+        };
+    }
+
+    private static Runnable runnable(final Multiset<String> counts, final String name) {
+        return new Runnable() {
+            @Override
+            public void run() {
+                counts.add(name);
+            }
+        };
+    }
+
+    private static Registration registration(String id, String expression, MisfirePolicy misfirePolicy) {
+        return Registration.builder(CronExpression.parse(expression), new Runnable() {
+            @Override
+            public void run() {
+            }
+        }).withId(id).withMisfirePolicy(misfirePolicy).build();
+    }
+
+    private static int readInt(RandomAccessFile file, int position) throws Exception {
+        file.seek(position);
+        return file.readInt();
+    }
+
+    private void reopen() {
+        journal.close();
+        journal = new ScheduleJournal(directory, 4096);
+    }
+
+    @After
+    public void after() {
+        journal.close();
+        executor.shutdownNow();
+    }
+}
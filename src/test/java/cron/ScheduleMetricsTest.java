@@ -0,0 +1,124 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2013 Anders Wisch
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package cron;
+
+import com.google.common.base.Supplier;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import javax.management.openmbean.CompositeData;
+import java.lang.management.ManagementFactory;
+import java.time.ZonedDateTime;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class ScheduleMetricsTest {
+    private ScheduledExecutorService executor;
+    private ExecutorService runnables;
+    private CronSchedule schedule;
+
+    @Before
+    public void before() {
+        executor = Executors.newSingleThreadScheduledExecutor();
+        runnables = Executors.newSingleThreadExecutor();
+        schedule = new CronSchedule(executor, runnables, false);
+    }
+
+    @Test
+    public void recordsLagDurationsAndDepths() throws Exception {
+        final CountDownLatch started = new CountDownLatch(1), release = new CountDownLatch(1);
+        CronExpression expression = CronExpression.parse("* * * * *");
+        for (int i = 0; i < 2; i++) {
+            schedule.add(expression, new Runnable() {
+                @Override
+                public void run() {
+                    started.countDown();
+                    try {
+                        release.await();
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                    }
+                }
+            });
+        }
+        // scheduled for a minute ago, so every run starts at least a minute late
+        schedule.run(ZonedDateTime.now().minusMinutes(1));
+        assertTrue(started.await(5, TimeUnit.SECONDS));
+        ScheduleMetrics.Snapshot metrics = schedule.getMetrics();
+        assertEquals(1, metrics.getRunning());
+        assertEquals(1, metrics.getQueued());
+        release.countDown();
+        runnables.shutdown();
+        assertTrue(runnables.awaitTermination(5, TimeUnit.SECONDS));
+        metrics = schedule.getMetrics();
+        assertEquals(0, metrics.getRunning());
+        assertEquals(0, metrics.getQueued());
+        assertEquals(1, metrics.getTicks());
+        assertEquals(1, metrics.getMatchingTimes().getCount());
+        assertEquals(2, metrics.getDispatchLag().getCount());
+        assertTrue(metrics.getDispatchLag().getMedian() >= TimeUnit.SECONDS.toNanos(59));
+        assertEquals(2, metrics.getDurations().getCount());
+    }
+
+    @Test
+    public void publishesOverJmx() throws Exception {
+        schedule.add(CronExpression.parse("* * * * *"), new Runnable() {
+            @Override
+            public void run() {
+            }
+        });
+        schedule.run(ZonedDateTime.now());
+        ObjectName name = ScheduleMetrics.registerMBean("test", new Supplier<ScheduleMetrics.Snapshot>() {
+            @Override
+            public ScheduleMetrics.Snapshot get() {
+                return schedule.getMetrics();
+            }
+        });
+        MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+        try {
+            assertEquals(1L, server.getAttribute(name, "Registrations"));
+            assertEquals(1L, server.getAttribute(name, "Ticks"));
+            CompositeData matching = (CompositeData) server.getAttribute(name, "MatchingTimes");
+            assertEquals(1L, matching.get("count"));
+            assertTrue(matching.containsKey("99thPercentile"));
+        } finally {
+            server.unregisterMBean(name);
+        }
+    }
+
+    @After
+    public void after() {
+        executor.shutdownNow();
+        runnables.shutdownNow();
+    }
+}
@@ -0,0 +1,113 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2013 Anders Wisch
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package cron;
+
+import com.google.common.collect.ConcurrentHashMultiset;
+import com.google.common.collect.Multiset;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.time.Instant;
+import java.time.ZoneId;
+import java.time.ZoneOffset;
+import java.time.ZonedDateTime;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+
+import static org.junit.Assert.assertEquals;
+
+public class ScheduleSimulatorTest {
+    private static final Executor DIRECT = new Executor() {
+        @Override
+        public void execute(Runnable command) {
+            command.run();
+        }
+    };
+    private static final Instant START = ZonedDateTime.of(2023, 1, 1, 0, 0, 0, 0, ZoneOffset.UTC).toInstant();
+    private static final Instant END = ZonedDateTime.of(2024, 1, 1, 0, 0, 0, 0, ZoneOffset.UTC).toInstant();
+
+    private ScheduledExecutorService executor;
+    private SimulatedClock clock;
+    private CronSchedule schedule;
+
+    @Before
+    public void before() {
+        executor = Executors.newSingleThreadScheduledExecutor();
+        // starts one millisecond early so that fires at the very start of the year are included
+        clock = new SimulatedClock(START.minusMillis(1), ZoneOffset.UTC);
+        schedule = new CronSchedule(executor, DIRECT, false, clock);
+    }
+
+    @Test
+    public void replaysYear() {
+        final Multiset<String> counts = ConcurrentHashMultiset.create();
+        for (String expression : new String[]{"*/5 * * * *", "0 * * * *", "0 9 * * 1-5", "0 0 1 * *"})
+            schedule.add(CronExpression.parse(expression), runnable(counts, expression));
+        long fires = new ScheduleSimulator(schedule).runUntil(END);
+        assertEquals(105120, counts.count("*/5 * * * *"));
+        assertEquals(8760, counts.count("0 * * * *"));
+        assertEquals(260, counts.count("0 9 * * 1-5"));
+        assertEquals(12, counts.count("0 0 1 * *"));
+        assertEquals(counts.size(), fires);
+        assertEquals(END, clock.instant());
+        assertEquals(fires, schedule.getMetrics().getDispatched());
+    }
+
+    @Test
+    public void firesAtSimulatedTimes() {
+        final List<FireEvent> events = new CopyOnWriteArrayList<>();
+        schedule.addFireListener(new FireListener() {
+            @Override
+            public void onFire(FireEvent event) {
+                events.add(event);
+            }
+        });
+        ZoneId tokyo = ZoneId.of("Asia/Tokyo");
+        schedule.add(CronExpression.parse("0 9 * * *"), tokyo, runnable(ConcurrentHashMultiset.<String>create(), ""));
+        new ScheduleSimulator(schedule).runUntil(START.plusSeconds(3 * 24 * 60 * 60));
+        assertEquals(3, events.size());
+        for (FireEvent event : events) {
+            assertEquals(event.getScheduledTime(), event.getActualTime());
+            assertEquals(9, event.getScheduledTime().atZone(tokyo).getHour());
+        }
+    }
+
+    private static Runnable runnable(final Multiset<String> counts, final String name) {
+        return new Runnable() {
+            @Override
+            public void run() {
+                counts.add(name);
+            }
+        };
+    }
+
+    @After
+    public void after() {
+        executor.shutdownNow();
+    }
+}
@@ -0,0 +1,132 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2013 Anders Wisch
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package cron;
+
+import com.google.common.collect.ConcurrentHashMultiset;
+import com.google.common.collect.Multiset;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.time.ZonedDateTime;
+import java.time.temporal.ChronoUnit;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class ShardedCronScheduleTest {
+    private WorkerPool pool;
+    private ShardedCronSchedule schedule;
+    private Multiset<Integer> counts;
+
+    @Before
+    public void before() {
+        pool = new WorkerPool(2);
+        schedule = new ShardedCronSchedule(4, pool, false);
+        counts = ConcurrentHashMultiset.create();
+    }
+
+    @Test
+    public void spreadsExpressionsOverPartitions() throws Exception {
+        for (int minute = 0; minute < 60; minute++)
+            add(minute + " * * * *", minute);
+        ZonedDateTime time = ZonedDateTime.now().truncatedTo(ChronoUnit.HOURS);
+        for (int minute = 0; minute < 60; minute++)
+            schedule.run(time.withMinute(minute));
+        Thread.sleep(50);
+        for (int minute = 0; minute < 60; minute++)
+            assertEquals(1, counts.count(minute));
+        ScheduleMetrics.Snapshot metrics = schedule.getMetrics();
+        assertEquals(60, metrics.getRegistrations());
+        // every partition sees every tick, but they are the same ticks
+        assertEquals(60, metrics.getTicks());
+        assertEquals(60 * 4, metrics.getMatchingTimes().getCount());
+        assertEquals(60 * 60, metrics.getEvaluated());
+        assertEquals(60, metrics.getMatched());
+        assertEquals(60, metrics.getDispatched());
+    }
+
+    @Test
+    public void spreadsRegistrationsOfOneExpression() throws Exception {
+        CronExpression expression = CronExpression.parse("* * * * *");
+        for (int id = 0; id < 100; id++)
+            add("* * * * *", id);
+        schedule.run(ZonedDateTime.now());
+        Thread.sleep(50);
+        for (int id = 0; id < 100; id++)
+            assertEquals(1, counts.count(id));
+        // matched once in each partition holding some of them
+        assertEquals(4, schedule.getMetrics().getMatched());
+        assertEquals(100, schedule.getMetrics().getDispatched());
+        schedule.remove(expression);
+        schedule.run(ZonedDateTime.now());
+        Thread.sleep(50);
+        assertEquals(1, counts.count(0));
+        assertEquals(0, schedule.getMetrics().getRegistrations());
+    }
+
+    @Test
+    public void removesOneRegistration() throws Exception {
+        Runnable runnable = new Runnable() {
+            @Override
+            public void run() {
+                counts.add(1);
+            }
+        };
+        schedule.add(CronExpression.parse("* * * * *"), runnable);
+        add("* * * * *", 2);
+        schedule.remove(CronExpression.parse("* * * * *"), runnable);
+        schedule.run(ZonedDateTime.now());
+        Thread.sleep(50);
+        assertEquals(0, counts.count(1));
+        assertEquals(1, counts.count(2));
+    }
+
+    @Test
+    public void startAndStop() throws Exception {
+        assertFalse(schedule.isStarted());
+        schedule.start();
+        assertTrue(schedule.isStarted());
+        schedule.stop();
+        assertFalse(schedule.isStarted());
+        assertEquals(0, schedule.getMetrics().getMaxLateness(TimeUnit.NANOSECONDS));
+    }
+
+    @After
+    public void after() {
+        schedule.shutdown();
+        pool.shutdown();
+    }
+
+    private void add(String expression, final int id) {
+        schedule.add(CronExpression.parse(expression), new Runnable() {
+            @Override
+            public void run() {
+                counts.add(id);
+            }
+        });
+    }
+}
@@ -0,0 +1,138 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2013 Anders Wisch
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package cron;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class TickerTest {
+    private static final long MINUTE = TimeUnit.MINUTES.toMillis(1);
+
+    private ScheduledExecutorService executor;
+    private Ticker ticker;
+    private List<Tick> ticks;
+
+    @Before
+    public void before() {
+        executor = Executors.newSingleThreadScheduledExecutor();
+        ticks = new CopyOnWriteArrayList<>();
+        ticker = new Ticker(executor, MINUTE, new TickListener() {
+            @Override
+            public void onTick(Tick tick) {
+                ticks.add(tick);
+            }
+        });
+    }
+
+    @Test
+    public void alignsToNextBoundary() {
+        ticker.start(10 * MINUTE + 15000, 0);
+        Tick tick = ticker.tick(11 * MINUTE, TimeUnit.SECONDS.toNanos(45));
+        assertEquals(11 * MINUTE, tick.getTime().toEpochMilli());
+        assertEquals(0, tick.getLateness(TimeUnit.NANOSECONDS));
+        assertFalse(tick.isClockJump());
+    }
+
+    @Test
+    public void doesNotDrift() {
+        ticker.start(0, 0);
+        long nanos = 0;
+        for (int i = 1; i <= 1000; i++) {
+            // every tick runs 7ms late
+            nanos += TimeUnit.MILLISECONDS.toNanos(i == 1 ? MINUTE + 7 : MINUTE);
+            Tick tick = ticker.tick(i * MINUTE + 7, nanos);
+            assertEquals(i * MINUTE, tick.getTime().toEpochMilli());
+            assertEquals(7, tick.getLateness(TimeUnit.MILLISECONDS));
+        }
+    }
+
+    @Test
+    public void earlyWakeUpDoesNotRepeatBoundary() {
+        ticker.start(0, 0);
+        Tick first = ticker.tick(MINUTE - 1, TimeUnit.MILLISECONDS.toNanos(MINUTE));
+        Tick second = ticker.tick(2 * MINUTE, TimeUnit.MILLISECONDS.toNanos(2 * MINUTE + 1));
+        assertEquals(MINUTE, first.getTime().toEpochMilli());
+        assertEquals(2 * MINUTE, second.getTime().toEpochMilli());
+    }
+
+    @Test
+    public void reportsLateness() {
+        ticker.start(0, 0);
+        Tick tick = ticker.tick(MINUTE + 2500, TimeUnit.MILLISECONDS.toNanos(MINUTE + 2500));
+        assertEquals(2500, tick.getLateness(TimeUnit.MILLISECONDS));
+        assertFalse(tick.isClockJump());
+    }
+
+    @Test
+    public void detectsForwardClockJump() {
+        ticker.start(0, 0);
+        Tick tick = ticker.tick(5 * MINUTE, TimeUnit.MILLISECONDS.toNanos(MINUTE));
+        assertTrue(tick.isClockJump());
+        assertEquals(4 * MINUTE, tick.getClockJumpInMilliseconds());
+    }
+
+    @Test
+    public void detectsBackwardClockJump() {
+        ticker.start(10 * MINUTE, 0);
+        Tick tick = ticker.tick(5 * MINUTE, TimeUnit.MILLISECONDS.toNanos(MINUTE));
+        assertTrue(tick.isClockJump());
+        assertEquals(-6 * MINUTE, tick.getClockJumpInMilliseconds());
+    }
+
+    @Test
+    public void ticksOnSecondBoundaries() throws Exception {
+        ticker = new Ticker(executor, 1000, new TickListener() {
+            @Override
+            public void onTick(Tick tick) {
+                ticks.add(tick);
+            }
+        });
+        ticker.start();
+        Thread.sleep(2500);
+        ticker.stop();
+        assertTrue(ticks.size() >= 2);
+        for (Tick tick : ticks) {
+            assertEquals(0, tick.getTime().toEpochMilli() % 1000);
+            assertTrue(tick.getLateness(TimeUnit.MILLISECONDS) < 500);
+        }
+        assertEquals(1000, ticks.get(1).getTime().toEpochMilli() - ticks.get(0).getTime().toEpochMilli());
+    }
+
+    @After
+    public void after() {
+        ticker.stop();
+        executor.shutdownNow();
+    }
+}
@@ -0,0 +1,88 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2013 Anders Wisch
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package cron;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+
+import java.time.ZoneOffset;
+import java.time.ZonedDateTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.NoSuchElementException;
+
+import org.junit.Test;
+
+public class TimelineTest {
+    private static final ZonedDateTime start = ZonedDateTime.of(2024, 1, 1, 0, 0, 0, 0, ZoneOffset.UTC);
+
+    @Test
+    public void mergesInTimeOrder() {
+        List<CronExpression> expressions = Arrays.asList(
+                CronExpression.parse("*/7 * * * *"),
+                CronExpression.parse("0 */2 * * *"),
+                CronExpression.parse("*/15 9-17 * * 1-5"),
+                CronExpression.parse("30 12 L * *"));
+        List<Timeline.Fire> fires = Timeline.after(expressions, start).take(1000);
+        assertEquals(1000, fires.size());
+        ZonedDateTime t = start;
+        int taken = 0;
+        while (taken < fires.size()) {
+            t = t.plusMinutes(1);
+            for (int i = 0; i < expressions.size() && taken < fires.size(); i++) {
+                if (expressions.get(i).matches(t)) {
+                    Timeline.Fire fire = fires.get(taken++);
+                    assertEquals(t, fire.getTime());
+                    assertEquals(i, fire.getIndex());
+                    assertEquals(expressions.get(i), fire.getExpression());
+                }
+            }
+        }
+    }
+
+    @Test
+    public void dropsFinishedExpressions() {
+        List<CronExpression> expressions = Arrays.asList(
+                CronExpression.parse("0 0 1 1 * 2024-2025"),
+                CronExpression.parse("0 0 * * * 2024"));
+        Timeline timeline = Timeline.after(expressions, start.minusMinutes(1));
+        List<Timeline.Fire> fires = new ArrayList<>();
+        while (timeline.hasNext())
+            fires.add(timeline.next());
+        assertEquals(368, fires.size());
+        assertEquals(0, fires.get(0).getIndex());
+        assertEquals(1, fires.get(1).getIndex());
+        assertEquals(start.plusYears(1), fires.get(367).getTime());
+        assertNull(timeline.peek());
+    }
+
+    @Test(expected = NoSuchElementException.class)
+    public void endsWhenNothingFires() {
+        Timeline timeline = Timeline.after(new ArrayList<CronExpression>(), start);
+        assertFalse(timeline.hasNext());
+        timeline.next();
+    }
+}
@@ -27,6 +27,7 @@ import org.junit.Test;
 
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotEquals;
 import static org.junit.Assert.fail;
 
 public class TokensTest {
@@ -142,6 +143,42 @@ public class TokensTest {
         assertEndOfInput();
     }
 
+    @Test
+    public void hash() {
+        tokenize("H(0-29)/15");
+        assertNextIs(Token.HASH);
+        assertNextIs(Token.OPEN_PARENTHESIS);
+        assertNextIsNumber(0);
+        assertNextIs(Token.RANGE);
+        assertNextIsNumber(29);
+        assertNextIs(Token.CLOSE_PARENTHESIS);
+        assertNextIs(Token.SKIP);
+        assertNextIsNumber(15);
+        assertEndOfInput();
+    }
+
+    @Test
+    public void hashDependsOnKeyAndField() {
+        tokens = new Tokens("H H", "a");
+        int first = tokens.hash();
+        assertEquals(first, new Tokens("H H", "a").hash());
+        assertNotEquals(first, new Tokens("H H", "b").hash());
+        tokens.next();
+        tokens.next();
+        assertNotEquals(first, tokens.hash());
+    }
+
+    @Test
+    public void hashWithoutKey() {
+        tokenize("H");
+        try {
+            tokens.hash();
+            fail("Expected exception");
+        } catch (IllegalArgumentException e) {
+            assertEquals("'H' requires a hash key in string: H", e.getMessage());
+        }
+    }
+
     @Test
     public void multipleWhitespaceCharacters() {
         tokenize(" \t \t \t \t ");
@@ -0,0 +1,120 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2013 Anders Wisch
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package cron;
+
+import org.junit.Test;
+
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.time.ZoneOffset;
+import java.time.ZonedDateTime;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertTrue;
+
+public class TransitionCronExpressionTest {
+    private static final ZoneId NEW_YORK = ZoneId.of("America/New_York");
+    // clocks go from 02:00 to 03:00 on March 10 and from 02:00 back to 01:00 on November 3
+    private static final ZonedDateTime SPRING_FORWARD = ZonedDateTime.of(2024, 3, 10, 3, 0, 0, 0, NEW_YORK);
+    private static final ZonedDateTime FALL_BACK = ZonedDateTime.of(2024, 11, 3, 1, 0, 0, 0, NEW_YORK)
+            .withLaterOffsetAtOverlap();
+
+    @Test
+    public void shiftsTimesOutOfGap() {
+        CronExpression expression = parse("30 2 * * *", GapPolicy.SHIFT, OverlapPolicy.TWICE);
+        ZonedDateTime midnight = SPRING_FORWARD.withHour(0);
+        assertEquals(SPRING_FORWARD, expression.nextTimeAfter(midnight));
+        assertTrue(expression.matches(SPRING_FORWARD));
+        assertFalse(expression.matches(SPRING_FORWARD.plusMinutes(30)));
+        assertEquals(SPRING_FORWARD.plusDays(1).withHour(2).withMinute(30), expression.nextTimeAfter(SPRING_FORWARD));
+    }
+
+    @Test
+    public void shiftsManyTimesOutOfGapOnce() {
+        CronExpression expression = parse("*/5 2,3 * * *", GapPolicy.SHIFT, OverlapPolicy.TWICE);
+        assertEquals(SPRING_FORWARD, expression.nextTimeAfter(SPRING_FORWARD.minusHours(2)));
+        assertEquals(SPRING_FORWARD.plusMinutes(5), expression.nextTimeAfter(SPRING_FORWARD));
+    }
+
+    @Test
+    public void skipsTimesInGap() {
+        CronExpression expression = parse("30 2 * * *", GapPolicy.SKIP, OverlapPolicy.TWICE);
+        assertFalse(expression.matches(SPRING_FORWARD));
+        ZonedDateTime nextDay = SPRING_FORWARD.plusDays(1).withHour(2).withMinute(30);
+        assertEquals(nextDay, expression.nextTimeAfter(SPRING_FORWARD.withHour(0)));
+    }
+
+    @Test
+    public void doesNotShiftWhenNothingInGapMatches() {
+        CronExpression expression = parse("0 4 * * *", GapPolicy.SHIFT, OverlapPolicy.TWICE);
+        assertFalse(expression.matches(SPRING_FORWARD));
+        assertEquals(SPRING_FORWARD.withHour(4), expression.nextTimeAfter(SPRING_FORWARD.withHour(0)));
+    }
+
+    @Test
+    public void shiftsOutOfGapPastAnOverlap() {
+        CronExpression expression = parse("30 2 9 3 *", GapPolicy.SHIFT, OverlapPolicy.ONCE);
+        // the autumn overlap comes first, then the gap of March 9, 2025 holds the only 02:30 of that day
+        ZonedDateTime autumn = ZonedDateTime.of(2024, 10, 1, 0, 0, 0, 0, NEW_YORK);
+        assertEquals(ZonedDateTime.of(2025, 3, 9, 3, 0, 0, 0, NEW_YORK), expression.nextTimeAfter(autumn));
+    }
+
+    @Test
+    public void firesOnceInOverlap() {
+        CronExpression expression = parse("30 1 * * *", GapPolicy.SHIFT, OverlapPolicy.ONCE);
+        ZonedDateTime first = FALL_BACK.withEarlierOffsetAtOverlap().withMinute(30), second = FALL_BACK.withMinute(30);
+        assertNotEquals(first.toInstant(), second.toInstant());
+        assertTrue(expression.matches(first));
+        assertFalse(expression.matches(second));
+        assertEquals(first, expression.nextTimeAfter(FALL_BACK.withHour(0)));
+        assertEquals(LocalDateTime.of(2024, 11, 4, 1, 30), expression.nextTimeAfter(first).toLocalDateTime());
+    }
+
+    @Test
+    public void firesTwiceInOverlap() {
+        CronExpression expression = parse("30 1 * * *", GapPolicy.SHIFT, OverlapPolicy.TWICE);
+        ZonedDateTime first = FALL_BACK.withEarlierOffsetAtOverlap().withMinute(30), second = FALL_BACK.withMinute(30);
+        assertTrue(expression.matches(second));
+        assertEquals(second, expression.nextTimeAfter(first));
+    }
+
+    @Test
+    public void ordinaryTimesAndFixedOffsets() {
+        CronExpression plain = CronExpression.parse("*/7 * * * *");
+        CronExpression expression = plain.withTransitionPolicies(GapPolicy.SHIFT, OverlapPolicy.ONCE);
+        ZonedDateTime t = ZonedDateTime.of(2024, 6, 1, 12, 0, 0, 0, NEW_YORK);
+        for (int i = 0; i < 1000; i++) {
+            assertEquals(plain.nextTimeAfter(t), expression.nextTimeAfter(t));
+            t = t.plusMinutes(13);
+        }
+        ZonedDateTime utc = SPRING_FORWARD.withZoneSameInstant(ZoneOffset.UTC);
+        assertEquals(plain.nextTimeAfter(utc), expression.nextTimeAfter(utc));
+    }
+
+    private static CronExpression parse(String s, GapPolicy gapPolicy, OverlapPolicy overlapPolicy) {
+        return CronExpression.parse(s).withTransitionPolicies(gapPolicy, overlapPolicy);
+    }
+}
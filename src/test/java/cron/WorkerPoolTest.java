@@ -0,0 +1,196 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2013 Anders Wisch
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package cron;
+
+import org.junit.After;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class WorkerPoolTest {
+    private WorkerPool pool;
+
+    @Test
+    public void runsEveryTaskInBatch() throws Exception {
+        pool = new WorkerPool(4);
+        final AtomicInteger count = new AtomicInteger();
+        final CountDownLatch done = new CountDownLatch(10001);
+        final Set<String> threads = ConcurrentHashMap.newKeySet();
+        List<Runnable> tasks = new ArrayList<>();
+        for (int i = 0; i < 10001; i++) {
+            tasks.add(new Runnable() {
+                @Override
+                public void run() {
+                    count.incrementAndGet();
+                    threads.add(Thread.currentThread().getName());
+                    done.countDown();
+                }
+            });
+        }
+        pool.executeAll(tasks);
+        assertTrue(done.await(5, TimeUnit.SECONDS));
+        assertEquals(10001, count.get());
+        assertTrue(threads.size() > 1);
+    }
+
+    @Test
+    public void smallBatch() throws Exception {
+        pool = new WorkerPool(8);
+        final CountDownLatch done = new CountDownLatch(3);
+        List<Runnable> tasks = new ArrayList<>();
+        for (int i = 0; i < 3; i++) {
+            tasks.add(new Runnable() {
+                @Override
+                public void run() {
+                    done.countDown();
+                }
+            });
+        }
+        pool.executeAll(tasks);
+        assertTrue(done.await(5, TimeUnit.SECONDS));
+    }
+
+    @Test
+    public void idleWorkersTakeQueuedChunks() throws Exception {
+        pool = new WorkerPool(2);
+        final CountDownLatch blocked = new CountDownLatch(1), release = new CountDownLatch(1),
+                done = new CountDownLatch(1);
+        pool.execute(new Runnable() {
+            @Override
+            public void run() {
+                blocked.countDown();
+                await(release);
+            }
+        });
+        assertTrue(blocked.await(5, TimeUnit.SECONDS));
+        // round robin hands this to the other worker; the next one queues behind the blocked worker
+        pool.execute(new Runnable() {
+            @Override
+            public void run() {
+            }
+        });
+        pool.execute(new Runnable() {
+            @Override
+            public void run() {
+                done.countDown();
+            }
+        });
+        assertTrue(done.await(5, TimeUnit.SECONDS));
+        release.countDown();
+    }
+
+    @Test
+    public void failingTaskDoesNotStopWorker() throws Exception {
+        pool = new WorkerPool(1, new ThreadFactoryWithoutStackTraces());
+        final CountDownLatch done = new CountDownLatch(1);
+        pool.execute(new Runnable() {
+            @Override
+            public void run() {
+                throw new IllegalStateException();
+            }
+        });
+        pool.execute(new Runnable() {
+            @Override
+            public void run() {
+                done.countDown();
+            }
+        });
+        assertTrue(done.await(5, TimeUnit.SECONDS));
+    }
+
+    @Test
+    public void erroringTaskDoesNotStopWorker() throws Exception {
+        pool = new WorkerPool(1, new ThreadFactoryWithoutStackTraces());
+        final CountDownLatch done = new CountDownLatch(1);
+        pool.execute(new Runnable() {
+            @Override
+            public void run() {
+                throw new StackOverflowError();
+            }
+        });
+        pool.execute(new Runnable() {
+            @Override
+            public void run() {
+                done.countDown();
+            }
+        });
+        assertTrue(done.await(5, TimeUnit.SECONDS));
+    }
+
+    @Test
+    public void shutdown() throws Exception {
+        pool = new WorkerPool(2);
+        pool.shutdown();
+        for (int i = 0; i < 100 && !pool.isTerminated(); i++)
+            Thread.sleep(10);
+        assertTrue(pool.isTerminated());
+        try {
+            pool.execute(new Runnable() {
+                @Override
+                public void run() {
+                }
+            });
+            fail("Expected exception");
+        } catch (IllegalStateException expected) {
+        }
+    }
+
+    @After
+    public void after() {
+        if (pool != null)
+            pool.shutdown();
+    }
+
+    private static void await(CountDownLatch latch) {
+        try {
+            latch.await();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private static class ThreadFactoryWithoutStackTraces implements java.util.concurrent.ThreadFactory {
+        @Override
+        public Thread newThread(Runnable r) {
+            Thread thread = new Thread(r);
+            thread.setDaemon(true);
+            thread.setUncaughtExceptionHandler(new Thread.UncaughtExceptionHandler() {
+                @Override
+                public void uncaughtException(Thread t, Throwable e) {
+                }
+            });
+            return thread;
+        }
+    }
+}
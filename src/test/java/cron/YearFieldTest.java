@@ -0,0 +1,144 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2013 Anders Wisch
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package cron;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class YearFieldTest {
+    private YearField field;
+
+    @Test
+    public void single() {
+        parse("2024");
+        assertTrue(field.contains(2024));
+        assertFalse(field.contains(2023));
+        assertFalse(field.contains(2025));
+        assertFalse(field.isFullRange());
+    }
+
+    @Test
+    public void range() {
+        parse("2020-2030");
+        assertFalse(field.contains(2019));
+        for (int year = 2020; year <= 2030; year++)
+            assertTrue(field.contains(year));
+        assertFalse(field.contains(2031));
+    }
+
+    @Test
+    public void wildcard() {
+        parse("*");
+        assertTrue(field.isFullRange());
+        assertTrue(field.contains(1970));
+        assertTrue(field.contains(2199));
+        assertTrue(field.contains(2500));
+        assertEquals(2500, field.next(2500));
+    }
+
+    @Test
+    public void wildcardSkip() {
+        parse("*/2");
+        assertFalse(field.isFullRange());
+        assertTrue(field.contains(1970));
+        assertFalse(field.contains(1971));
+        assertTrue(field.contains(2024));
+        assertFalse(field.contains(2025));
+    }
+
+    @Test
+    public void skipStartsAtFirstYear() {
+        parse("2025/2");
+        assertFalse(field.contains(2024));
+        assertTrue(field.contains(2025));
+        assertFalse(field.contains(2026));
+        assertTrue(field.contains(2027));
+        assertTrue(field.contains(2199));
+        parse("2021-2030/3");
+        assertContains(2021, 2024, 2027, 2030);
+    }
+
+    @Test
+    public void next() {
+        parse("1975,2024,2100-2102,2199");
+        assertEquals(1975, field.next(1900));
+        assertEquals(1975, field.next(1975));
+        assertEquals(2024, field.next(1976));
+        assertEquals(2100, field.next(2025));
+        assertEquals(2102, field.next(2102));
+        assertEquals(2199, field.next(2103));
+        assertEquals(-1, field.next(2200));
+    }
+
+    @Test
+    public void previous() {
+        parse("1975,2024,2100-2102,2199");
+        assertEquals(2199, field.previous(3000));
+        assertEquals(2102, field.previous(2198));
+        assertEquals(2024, field.previous(2099));
+        assertEquals(1975, field.previous(2023));
+        assertEquals(-1, field.previous(1974));
+    }
+
+    @Test
+    public void outOfRange() {
+        try {
+            parse("1969");
+            fail("Expected exception");
+        } catch (IllegalArgumentException e) {
+            assertEquals("Year must be from 1970 to 2199: 1969", e.getMessage());
+        }
+        try {
+            parse("2024-2200");
+            fail("Expected exception");
+        } catch (IllegalArgumentException e) {
+            assertEquals("Year must be from 1970 to 2199: 2200", e.getMessage());
+        }
+    }
+
+    @Test
+    public void equality() {
+        assertEquals(parse("2020-2022"), parse("2020,2021,2022"));
+        assertEquals(parse("2020-2022").hashCode(), parse("2020,2021,2022").hashCode());
+    }
+
+    private void assertContains(int... years) {
+        int i = 0;
+        for (int year = YearField.MIN; year <= YearField.MAX; year++)
+            if (i < years.length && years[i] == year) {
+                assertTrue(field.contains(year));
+                i++;
+            } else {
+                assertFalse(String.valueOf(year), field.contains(year));
+            }
+    }
+
+    private YearField parse(String s) {
+        return field = YearField.parse(new Tokens(s));
+    }
+}
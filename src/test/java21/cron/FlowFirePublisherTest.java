@@ -0,0 +1,138 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2013 Anders Wisch
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package cron;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.time.ZoneOffset;
+import java.time.ZonedDateTime;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Flow;
+import java.util.concurrent.ScheduledExecutorService;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class FlowFirePublisherTest {
+    private static final ZonedDateTime START = ZonedDateTime.of(2024, 1, 1, 0, 0, 0, 0, ZoneOffset.UTC);
+
+    private ScheduledExecutorService executor;
+    private CronSchedule schedule;
+    private FirePublisher publisher;
+
+    @Before
+    public void before() {
+        executor = Executors.newSingleThreadScheduledExecutor();
+        schedule = new CronSchedule(executor);
+        schedule.add(Registration.builder(CronExpression.parse("* * * * *"), new Runnable() {
+            @Override
+            public void run() {
+            }
+        }).withId("job").build());
+        publisher = FirePublisher.builder(schedule).build();
+    }
+
+    @Test
+    public void isAFlowPublisher() {
+        assertTrue(((Object) publisher) instanceof Flow.Publisher);
+    }
+
+    @Test
+    public void deliversRequestedEventsToFlowSubscribers() {
+        Recorder recorder = new Recorder();
+        flow(publisher).subscribe(recorder);
+        recorder.subscription.request(2);
+        for (int minute = 0; minute < 3; minute++)
+            schedule.run(START.plusMinutes(minute));
+        assertEquals(2, recorder.events.size());
+        assertEquals("job", recorder.events.get(0).getId());
+        assertEquals(START.plusMinutes(1).toInstant(), recorder.events.get(1).getScheduledTime());
+        recorder.subscription.request(1);
+        assertEquals(3, recorder.events.size());
+        publisher.close();
+        assertEquals(0, recorder.completed.getCount());
+        assertNull(recorder.error);
+    }
+
+    @Test
+    public void cancelAndErrorsReachFlowSubscribers() {
+        Recorder cancelled = new Recorder(), failed = new Recorder();
+        flow(publisher).subscribe(cancelled);
+        flow(publisher).subscribe(failed);
+        cancelled.subscription.request(Long.MAX_VALUE);
+        cancelled.subscription.cancel();
+        schedule.run(START);
+        assertEquals(0, cancelled.events.size());
+        failed.subscription.request(-1);
+        assertTrue(failed.error instanceof IllegalArgumentException);
+        assertEquals(0, publisher.getSubscriberCount());
+    }
+
+    /**
+     * This test is compiled against the Java 8 class and run against the Java 21 one, which is the Flow publisher.
+     */
+    @SuppressWarnings("unchecked")
+    private static Flow.Publisher<FireEvent> flow(FirePublisher publisher) {
+        return (Flow.Publisher<FireEvent>) (Object) publisher;
+    }
+
+    @After
+    public void after() {
+        schedule.stop();
+        executor.shutdownNow();
+    }
+
+    private static final class Recorder implements Flow.Subscriber<FireEvent> {
+        private final List<FireEvent> events = new CopyOnWriteArrayList<>();
+        private final CountDownLatch completed = new CountDownLatch(1);
+        private volatile Flow.Subscription subscription;
+        private volatile Throwable error;
+
+        @Override
+        public void onSubscribe(Flow.Subscription subscription) {
+            this.subscription = subscription;
+        }
+
+        @Override
+        public void onNext(FireEvent event) {
+            events.add(event);
+        }
+
+        @Override
+        public void onError(Throwable throwable) {
+            error = throwable;
+        }
+
+        @Override
+        public void onComplete() {
+            completed.countDown();
+        }
+    }
+}